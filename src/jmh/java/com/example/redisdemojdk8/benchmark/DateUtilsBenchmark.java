@@ -0,0 +1,138 @@
+package com.example.redisdemojdk8.benchmark;
+
+import com.example.redisdemojdk8.util.DateStyle;
+import com.example.redisdemojdk8.util.DateUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @description: DateUtils常用方法的基准测试
+ * <p>单线程方法测量单次调用的开销；Alternating结尾的方法多线程运行，每次调用轮换日期格式，
+ * 测量getDateFormat中线程复用的SimpleDateFormat反复applyPattern的开销。
+ * 运行：mvn -Pjmh compile exec:exec -Djmh.args="DateUtilsBenchmark -prof gc"</p>
+ * @author Kent HAN
+ * @date 2023/12/22 16:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DateUtilsBenchmark {
+
+    /**
+     * 轮换使用的日期格式，与业务中常见的写法一致
+     */
+    private static final DateStyle[] ALTERNATING_STYLES = {
+            DateStyle.YYYY_MM_DD_HH_MM_SS, DateStyle.YYYY_MM_DD, DateStyle.YYYYMMDDHHMMSS, DateStyle.HH_MM_SS
+    };
+
+    private Date date;
+
+    private Date otherDate;
+
+    private String dateText;
+
+    private String[] alternatingTexts;
+
+    @Setup
+    public void setup() {
+        date = DateUtils.stringToDate("2023-12-22 16:30:45", DateStyle.YYYY_MM_DD_HH_MM_SS);
+        otherDate = DateUtils.stringToDate("2023-12-19 08:15:00", DateStyle.YYYY_MM_DD_HH_MM_SS);
+        dateText = DateUtils.dateToString(date, DateStyle.YYYY_MM_DD_HH_MM_SS);
+        alternatingTexts = new String[ALTERNATING_STYLES.length];
+        for (int i = 0; i < ALTERNATING_STYLES.length; i++) {
+            alternatingTexts[i] = DateUtils.dateToString(date, ALTERNATING_STYLES[i]);
+        }
+    }
+
+    /**
+     * 每个线程独立的格式轮换位置
+     */
+    @State(Scope.Thread)
+    public static class Rotation {
+
+        private int index;
+
+        private int next() {
+            index = (index + 1) % ALTERNATING_STYLES.length;
+            return index;
+        }
+    }
+
+    @Benchmark
+    public String dateToString() {
+        return DateUtils.dateToString(date, DateStyle.YYYY_MM_DD_HH_MM_SS);
+    }
+
+    @Benchmark
+    public Date stringToDateWithPattern() {
+        return DateUtils.stringToDate(dateText, DateStyle.YYYY_MM_DD_HH_MM_SS);
+    }
+
+    /**
+     * 不指定格式时先通过getDateStyle逐个尝试所有格式
+     */
+    @Benchmark
+    public Date stringToDate() {
+        return DateUtils.stringToDate(dateText);
+    }
+
+    @Benchmark
+    public DateStyle getDateStyle() {
+        return DateUtils.getDateStyle(dateText);
+    }
+
+    @Benchmark
+    public Date addDay() {
+        return DateUtils.addDay(date, 1);
+    }
+
+    @Benchmark
+    public String addDayString() {
+        return DateUtils.addDay(dateText, 1);
+    }
+
+    @Benchmark
+    public int dayDiff() {
+        return DateUtils.dayDiff(date, otherDate, Calendar.HOUR_OF_DAY);
+    }
+
+    @Benchmark
+    public String getSectimeName() {
+        return DateUtils.getSectimeName("07:00", "09:00");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String dateToStringAlternating(Rotation rotation) {
+        return DateUtils.dateToString(date, ALTERNATING_STYLES[rotation.next()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Date stringToDateAlternating(Rotation rotation) {
+        int i = rotation.next();
+        return DateUtils.stringToDate(alternatingTexts[i], ALTERNATING_STYLES[i]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String dateToStringFixedPattern() {
+        return DateUtils.dateToString(date, DateStyle.YYYY_MM_DD_HH_MM_SS);
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.redisdemojdk8.benchmark;
+
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.example.redisdemojdk8.constant.Constant;
+import com.example.redisdemojdk8.util.CodecRedisSerializer;
+import com.example.redisdemojdk8.util.FastJson2JsonRedisSerializer;
+import com.example.redisdemojdk8.util.RedisCodecRegistry;
+import com.example.redisdemojdk8.util.SchemaBinaryCodec;
+import com.example.redisdemojdk8.util.SerializerRedisCodec;
+import lombok.Data;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @description: 值序列化和Key编码的基准测试
+ * <p>status为系统状态这类小对象，trail为约500个点的车辆轨迹。
+ * 运行：mvn -Pjmh compile exec:exec -Djmh.args="SerializerBenchmark -prof gc"，
+ * gc.alloc.rate.norm即每次操作分配的字节数。</p>
+ * @author Kent HAN
+ * @date 2023/12/22 15:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializerBenchmark {
+
+    private static final int SCHEMA_STATUS_CODEC_ID = 10;
+
+    private static final int SCHEMA_TRAIL_CODEC_ID = 11;
+
+    @Param({"status", "trail"})
+    private String payload;
+
+    @Param({"4096"})
+    private int compressThreshold;
+
+    private Object value;
+
+    private String key;
+
+    private FastJson2JsonRedisSerializer<Object> fastJson;
+
+    private FastJson2JsonRedisSerializer<Object> fastJsonCompressed;
+
+    private GenericJackson2JsonRedisSerializer jackson;
+
+    private StringRedisSerializer keySerializer;
+
+    private CodecRedisSerializer schemaBinary;
+
+    private byte[] fastJsonBytes;
+
+    private byte[] fastJsonCompressedBytes;
+
+    private byte[] jacksonBytes;
+
+    private byte[] schemaBinaryBytes;
+
+    @Setup
+    public void setup() {
+        // WriteClassName写入的类名需要放行才能反序列化
+        ParserConfig.getGlobalInstance().addAccept("com.example.redisdemojdk8.");
+        value = "trail".equals(payload) ? carTrail(500) : sysStatus();
+        key = Constant.KEY_PREFIX + Constant.WEBSOCKET_TOPIC_CAR_TRAIL_INFO + ":" + "370100" + Constant.SEPARATOR_MINUS + 1024;
+        fastJson = new FastJson2JsonRedisSerializer<>(Object.class);
+        fastJsonCompressed = new FastJson2JsonRedisSerializer<>(Object.class, compressThreshold);
+        jackson = new GenericJackson2JsonRedisSerializer();
+        keySerializer = new StringRedisSerializer();
+        RedisCodecRegistry registry = new RedisCodecRegistry()
+                .register(new SerializerRedisCodec(RedisCodecRegistry.FASTJSON_CODEC_ID, fastJson))
+                .register(new SchemaBinaryCodec<>(SCHEMA_STATUS_CODEC_ID, SysStatus.class))
+                .register(new SchemaBinaryCodec<>(SCHEMA_TRAIL_CODEC_ID, CarTrail.class))
+                .mapType(SysStatus.class, SCHEMA_STATUS_CODEC_ID)
+                .mapType(CarTrail.class, SCHEMA_TRAIL_CODEC_ID);
+        schemaBinary = new CodecRedisSerializer(registry, fastJson);
+        fastJsonBytes = fastJson.serialize(value);
+        fastJsonCompressedBytes = fastJsonCompressed.serialize(value);
+        jacksonBytes = jackson.serialize(value);
+        schemaBinaryBytes = schemaBinary.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] keyEncode() {
+        return keySerializer.serialize(key);
+    }
+
+    @Benchmark
+    public byte[] fastJsonSerialize() {
+        return fastJson.serialize(value);
+    }
+
+    @Benchmark
+    public Object fastJsonDeserialize() {
+        return fastJson.deserialize(fastJsonBytes);
+    }
+
+    @Benchmark
+    public byte[] fastJsonCompressedSerialize() {
+        return fastJsonCompressed.serialize(value);
+    }
+
+    @Benchmark
+    public Object fastJsonCompressedDeserialize() {
+        return fastJsonCompressed.deserialize(fastJsonCompressedBytes);
+    }
+
+    @Benchmark
+    public byte[] jacksonSerialize() {
+        return jackson.serialize(value);
+    }
+
+    @Benchmark
+    public Object jacksonDeserialize() {
+        return jackson.deserialize(jacksonBytes);
+    }
+
+    @Benchmark
+    public byte[] schemaBinarySerialize() {
+        return schemaBinary.serialize(value);
+    }
+
+    @Benchmark
+    public Object schemaBinaryDeserialize() {
+        return schemaBinary.deserialize(schemaBinaryBytes);
+    }
+
+    private static SysStatus sysStatus() {
+        SysStatus status = new SysStatus();
+        status.setServiceName("utc-signal-service");
+        status.setIp("192.168.10.21");
+        status.setStatus(1);
+        status.setCpuUsage(37.5);
+        status.setMemoryUsage(62.25);
+        status.setUpdateTime(new Date());
+        return status;
+    }
+
+    private static CarTrail carTrail(int points) {
+        CarTrail trail = new CarTrail();
+        trail.setPlateNo("鲁A12345");
+        trail.setCrossId("370100-1024");
+        trail.setStartTime(new Date());
+        List<TrailPoint> list = new ArrayList<>(points);
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < points; i++) {
+            TrailPoint point = new TrailPoint();
+            point.setLongitude(117.000923 + i * 0.00001);
+            point.setLatitude(36.675807 + i * 0.00001);
+            point.setSpeed(30 + i % 20);
+            point.setHeading(i % 360);
+            point.setTimestamp(time + i * 100L);
+            list.add(point);
+        }
+        trail.setPoints(list);
+        return trail;
+    }
+
+    @Data
+    public static class SysStatus {
+
+        private String serviceName;
+
+        private String ip;
+
+        private int status;
+
+        private double cpuUsage;
+
+        private double memoryUsage;
+
+        private Date updateTime;
+    }
+
+    @Data
+    public static class CarTrail {
+
+        private String plateNo;
+
+        private String crossId;
+
+        private Date startTime;
+
+        private List<TrailPoint> points;
+    }
+
+    @Data
+    public static class TrailPoint {
+
+        private double longitude;
+
+        private double latitude;
+
+        private int speed;
+
+        private int heading;
+
+        private long timestamp;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.redisdemojdk8.config;
+
+import com.example.redisdemojdk8.embedded.EmbeddedRedisServer;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 内嵌Redis配置
+ * <p>redis.embedded.enabled=true 时在创建其他Bean之前启动进程内的Redis协议服务端，
+ * 并把 spring.redis.host/port 指向它，JedisPool、Jedis和RedisTemplate都连接到内嵌服务端。
+ * 可以使用 embedded profile（-Dspring.profiles.active=embedded）启动应用或运行测试。</p>
+ *
+ * @author Kent HAN
+ * @date 2023/12/25 17:00
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "redis.embedded", name = "enabled", havingValue = "true")
+public class EmbeddedRedisConfig {
+
+    /**
+     * 必须是static方法，BeanFactoryPostProcessor在普通Bean之前创建
+     * @return EmbeddedRedisLauncher
+     */
+    @Bean
+    public static EmbeddedRedisLauncher embeddedRedisLauncher() {
+        return new EmbeddedRedisLauncher();
+    }
+
+    /**
+     * 启动内嵌Redis，覆盖连接地址，并将服务端注册为名为embeddedRedisServer的Bean
+     */
+    public static class EmbeddedRedisLauncher implements BeanFactoryPostProcessor, EnvironmentAware,
+            DisposableBean, PriorityOrdered {
+
+        private ConfigurableEnvironment environment;
+
+        private EmbeddedRedisServer server;
+
+        @Override
+        public void setEnvironment(Environment environment) {
+            this.environment = (ConfigurableEnvironment) environment;
+        }
+
+        @Override
+        public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+            server = new EmbeddedRedisServer(environment.getProperty("redis.embedded.port", Integer.class, 0));
+            server.setLatency(environment.getProperty("redis.embedded.latency-micros", Long.class, 0L),
+                    environment.getProperty("redis.embedded.jitter-micros", Long.class, 0L));
+            try {
+                server.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("内嵌Redis启动失败", e);
+            }
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("spring.redis.host", "127.0.0.1");
+            properties.put("spring.redis.port", server.getPort());
+            environment.getPropertySources().addFirst(new MapPropertySource("embeddedRedis", properties));
+            beanFactory.registerSingleton("embeddedRedisServer", server);
+        }
+
+        @Override
+        public void destroy() {
+            if (server != null) {
+                server.stop();
+            }
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.redisdemojdk8.config;
+
+import com.example.redisdemojdk8.util.NearCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 近端缓存配置
+ * <p>启用后订阅Redis的keyspace通知，其他节点修改或删除Key时本地缓存随之失效。
+ * Redis服务端需要开启 notify-keyspace-events（至少包含 K、g、$、h、x、e），
+ * 可以通过 redis.near-cache.configure-notifications 在启动时自动设置。</p>
+ *
+ * @author Kent HAN
+ * @date 2023/12/19 10:40
+ */
+@Slf4j
+@Configuration
+public class NearCacheConfig {
+
+    /**
+     * 近端缓存需要的keyspace通知类型
+     */
+    private static final String KEYSPACE_EVENTS = "Kg$hxe";
+
+    @Value("${redis.near-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${redis.near-cache.prefixes:}")
+    private List<String> prefixes;
+
+    @Value("${redis.near-cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${redis.near-cache.ttl-millis:5000}")
+    private long ttlMillis;
+
+    @Value("${spring.redis.database}")
+    private int database;
+
+    /**
+     * 近端缓存，未启用时不缓存任何Key
+     * @return NearCache
+     */
+    @Bean
+    public NearCache nearCache() {
+        return new NearCache(enabled ? prefixes : Collections.emptyList(), maxSize, ttlMillis);
+    }
+
+    /**
+     * 订阅启用前缀的keyspace通知，收到通知时使本地缓存失效
+     * @param factory
+     * @param nearCache
+     * @param configureNotifications 是否在启动时通过CONFIG SET开启keyspace通知
+     * @return RedisMessageListenerContainer
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "redis.near-cache", name = "enabled", havingValue = "true")
+    public RedisMessageListenerContainer nearCacheListenerContainer(RedisConnectionFactory factory, NearCache nearCache,
+            @Value("${redis.near-cache.configure-notifications:false}") boolean configureNotifications) {
+        if (configureNotifications) {
+            try (RedisConnection connection = factory.getConnection()) {
+                connection.setConfig("notify-keyspace-events", KEYSPACE_EVENTS);
+            } catch (RuntimeException e) {
+                log.warn("开启keyspace通知失败，近端缓存只依赖本地失效和存活时间", e);
+            }
+        }
+        String channelPrefix = "__keyspace@" + database + "__:";
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        for (String prefix : nearCache.getPrefixes()) {
+            container.addMessageListener((message, pattern) -> {
+                String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+                nearCache.invalidate(channel.substring(channelPrefix.length()));
+            }, new PatternTopic(channelPrefix + prefix + "*"));
+        }
+        return container;
+    }
+}
@@ -1,26 +1,43 @@
 package com.example.redisdemojdk8.config;
 
+import com.example.redisdemojdk8.constant.Constant;
+import com.example.redisdemojdk8.util.CodecRedisSerializer;
 import com.example.redisdemojdk8.util.FastJson2JsonRedisSerializer;
+import com.example.redisdemojdk8.util.MonitoredJedisPool;
+import com.example.redisdemojdk8.util.RedisCommandStats;
+import com.example.redisdemojdk8.util.RedisCodecRegistry;
+import com.example.redisdemojdk8.util.RedisKeyStats;
+import com.example.redisdemojdk8.util.RefreshAheadRedisCacheManager;
+import com.example.redisdemojdk8.util.SchemaBinaryCodec;
+import com.example.redisdemojdk8.util.SerializerRedisCodec;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CachingConfigurerSupport;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
-import org.springframework.data.redis.cache.RedisCacheManager;
-import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.util.ClassUtils;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
 @Configuration
 @EnableAutoConfiguration
+@EnableCaching
 public class RedisConfig extends CachingConfigurerSupport {
 
     @Value("${spring.redis.host}")
@@ -50,9 +67,51 @@ public class RedisConfig extends CachingConfigurerSupport {
     @Value("${spring.redis.jedis.pool.max-wait}")
     private long maxWaitMillis;
 
+    /**
+     * 值序列化后超过该字节数时压缩存储，小于等于0表示不压缩
+     */
+    @Value("${redis.serializer.compress-threshold:0}")
+    private int compressThreshold;
+
+    /**
+     * 注册按类结构编码的SchemaBinaryCodec，格式 编解码器ID=类名，多个用逗号分隔
+     */
+    @Value("${redis.serializer.schema-codecs:}")
+    private String schemaCodecs;
+
+    /**
+     * 按Key前缀指定值的编解码器，格式 前缀=编解码器，编解码器为fastjson、jackson或已注册的ID，多个用逗号分隔
+     */
+    @Value("${redis.serializer.prefix-codecs:}")
+    private String prefixCodecs;
+
+    /**
+     * 缓存默认存活时间（毫秒），0表示不过期
+     */
+    @Value("${redis.cache.ttl-millis:600000}")
+    private long cacheTtlMillis;
+
+    /**
+     * 缓存值默认编解码：jackson、fastjson、jdk
+     */
+    @Value("${redis.cache.codec:jackson}")
+    private String cacheCodec;
+
+    /**
+     * 按缓存名单独配置，格式 缓存名=值，多个用逗号分隔
+     */
+    @Value("${redis.cache.ttls:}")
+    private String cacheTtls;
+
+    @Value("${redis.cache.codecs:}")
+    private String cacheCodecs;
+
+    @Value("${redis.cache.prefixes:}")
+    private String cachePrefixes;
+
     /**
      * 获取Jedis连接工厂
-     * <p>用于创建Jedis对象</p>
+     * <p>用于创建Jedis对象，借用等待时间和连接池耗尽次数见 /redis/stats/pool</p>
      * @return JedisPool
      */
     @Bean
@@ -64,7 +123,7 @@ public class RedisConfig extends CachingConfigurerSupport {
         jedisPoolConfig.setMinIdle(minIdle);
         jedisPoolConfig.setTestOnBorrow(false);
         jedisPoolConfig.setTestOnReturn(false);
-        return new JedisPool(jedisPoolConfig, host, port,timeout, password, database);
+        return new MonitoredJedisPool(jedisPoolConfig, host, port, timeout, password, database);
     }
 
     /**
@@ -79,28 +138,127 @@ public class RedisConfig extends CachingConfigurerSupport {
         template.setConnectionFactory(factory);
         //不开启事务
         template.setEnableTransactionSupport(false);
-        // 值采用json序列化value
-        template.setValueSerializer(fastJson2JsonRedisSerializer());
+        // 值采用json序列化value，注册表中指定了编解码器的类型和前缀除外
+        template.setValueSerializer(new CodecRedisSerializer(redisCodecRegistry(), fastJson2JsonRedisSerializer()));
         //使用StringRedisSerializer来序列化和反序列化redis的key值
         template.setKeySerializer(new StringRedisSerializer());
         // 设置hash key 和value序列化模式
         template.setHashKeySerializer(new StringRedisSerializer());
-        template.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
+        template.setHashValueSerializer(new CodecRedisSerializer(redisCodecRegistry(), new GenericJackson2JsonRedisSerializer()));
         template.afterPropertiesSet();
         return template;
     }
 
+    /**
+     * 编解码器注册表
+     * <p>默认只注册FastJson和Jackson，高频前缀可以通过 redis.serializer.schema-codecs 注册SchemaBinaryCodec，
+     * 再通过 redis.serializer.prefix-codecs 切换。旧版本节点无法读取新编解码器写入的值，所有节点升级之后再配置前缀。</p>
+     * @return RedisCodecRegistry
+     */
+    @Bean
+    public RedisCodecRegistry redisCodecRegistry() {
+        RedisCodecRegistry registry = new RedisCodecRegistry()
+                .register(new SerializerRedisCodec(RedisCodecRegistry.FASTJSON_CODEC_ID, fastJson2JsonRedisSerializer()))
+                .register(new SerializerRedisCodec(RedisCodecRegistry.JACKSON_CODEC_ID, new GenericJackson2JsonRedisSerializer()));
+        parseMapping("redis.serializer.schema-codecs", schemaCodecs).forEach((id, className) -> {
+            try {
+                registry.register(new SchemaBinaryCodec<>(Integer.parseInt(id),
+                        ClassUtils.forName(className, getClass().getClassLoader())));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("Invalid redis.serializer.schema-codecs item: " + id + "=" + className, e);
+            }
+        });
+        parseMapping("redis.serializer.prefix-codecs", prefixCodecs)
+                .forEach((prefix, codec) -> registry.mapPrefix(prefix, codecId(codec)));
+        return registry;
+    }
+
+    private static int codecId(String codec) {
+        switch (codec) {
+            case "fastjson":
+                return RedisCodecRegistry.FASTJSON_CODEC_ID;
+            case "jackson":
+                return RedisCodecRegistry.JACKSON_CODEC_ID;
+            default:
+                return Integer.parseInt(codec);
+        }
+    }
+
     /**
      * 选择redis作为默认缓存工具
+     * <p>Key为 Constant.KEY_PREFIX + "cache:" + 缓存名 + ":" + 参数，可以按缓存名单独配置存活时间、值编解码和Key前缀。
+     * @Cacheable(sync = true) 的缓存在剩余存活时间低于 redis.cache.refresh-ahead-ratio 时后台刷新。</p>
      * @param redisConnectionFactory
+     * @param refreshAheadRatio 剩余存活时间低于TTL的该比例时提前刷新，0表示不刷新
+     * @param refreshThreads 后台刷新线程数
      * @return
      */
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
-        RedisCacheConfiguration redisCacheConfiguration = RedisCacheConfiguration.defaultCacheConfig();
-        return RedisCacheManager
-                .builder(RedisCacheWriter.nonLockingRedisCacheWriter(redisConnectionFactory))
-                .cacheDefaults(redisCacheConfiguration).build();
+    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                     @Value("${redis.cache.refresh-ahead-ratio:0.2}") double refreshAheadRatio,
+                                     @Value("${redis.cache.refresh-threads:4}") int refreshThreads) {
+        Map<String, String> ttls = parseMapping("redis.cache.ttls", cacheTtls);
+        Map<String, String> codecs = parseMapping("redis.cache.codecs", cacheCodecs);
+        Map<String, String> prefixes = parseMapping("redis.cache.prefixes", cachePrefixes);
+        RedisCacheConfiguration defaults = cacheConfiguration(cacheTtlMillis, cacheCodec, null);
+        Set<String> cacheNames = new LinkedHashSet<>(ttls.keySet());
+        cacheNames.addAll(codecs.keySet());
+        cacheNames.addAll(prefixes.keySet());
+        Map<String, RedisCacheConfiguration> configurations = new LinkedHashMap<>();
+        for (String cacheName : cacheNames) {
+            configurations.put(cacheName, cacheConfiguration(
+                    ttls.containsKey(cacheName) ? Long.parseLong(ttls.get(cacheName)) : cacheTtlMillis,
+                    codecs.getOrDefault(cacheName, cacheCodec), prefixes.get(cacheName)));
+        }
+        return new RefreshAheadRedisCacheManager(redisConnectionFactory, defaults, configurations,
+                refreshAheadRatio, refreshThreads);
+    }
+
+    /**
+     * 单个缓存的配置
+     * @param ttlMillis 存活时间（毫秒），0表示不过期
+     * @param codec 值编解码：jackson、fastjson、jdk
+     * @param prefix Constant.KEY_PREFIX之后的Key前缀，null表示 cache:缓存名:
+     * @return RedisCacheConfiguration
+     */
+    private RedisCacheConfiguration cacheConfiguration(long ttlMillis, String codec, String prefix) {
+        RedisSerializer<?> serializer;
+        switch (codec.trim()) {
+            case "jackson":
+                serializer = new CodecRedisSerializer(redisCodecRegistry(), new GenericJackson2JsonRedisSerializer());
+                break;
+            case "fastjson":
+                serializer = new CodecRedisSerializer(redisCodecRegistry(), fastJson2JsonRedisSerializer());
+                break;
+            case "jdk":
+                serializer = RedisSerializer.java();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown cache codec: " + codec);
+        }
+        return RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(Duration.ofMillis(ttlMillis))
+                .computePrefixWith(cacheName -> Constant.KEY_PREFIX
+                        + (prefix != null ? prefix : "cache:" + cacheName + ":"))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer));
+    }
+
+    /**
+     * 解析 名称=值 格式的配置，多个用逗号分隔
+     */
+    private static Map<String, String> parseMapping(String property, String value) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (String item : value.split(",")) {
+            if (item.trim().isEmpty()) {
+                continue;
+            }
+            int separator = item.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid " + property + " item: " + item);
+            }
+            result.put(item.substring(0, separator).trim(), item.substring(separator + 1).trim());
+        }
+        return result;
     }
 
     /**
@@ -109,7 +267,30 @@ public class RedisConfig extends CachingConfigurerSupport {
      */
     @Bean
     public RedisSerializer fastJson2JsonRedisSerializer() {
-        return new FastJson2JsonRedisSerializer(Object.class);
+        return new FastJson2JsonRedisSerializer(Object.class, compressThreshold);
+    }
+
+    /**
+     * 热Key和大Key统计
+     * @param enabled 是否启用
+     * @param sampleRate 采样率，每sampleRate次访问记录一次
+     * @param capacity 热Key监控的Key数量
+     * @return RedisKeyStats
+     */
+    @Bean
+    public RedisKeyStats redisKeyStats(@Value("${redis.key-stats.enabled:false}") boolean enabled,
+                                       @Value("${redis.key-stats.sample-rate:16}") int sampleRate,
+                                       @Value("${redis.key-stats.capacity:256}") int capacity) {
+        return new RedisKeyStats(enabled, sampleRate, capacity, 50);
+    }
+
+    /**
+     * RedisUtils各方法的耗时统计
+     * @return RedisCommandStats
+     */
+    @Bean
+    public RedisCommandStats redisCommandStats() {
+        return new RedisCommandStats();
     }
 
     @Value("${spring.redis.host}")
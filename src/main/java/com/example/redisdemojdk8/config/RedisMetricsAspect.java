@@ -0,0 +1,40 @@
+package com.example.redisdemojdk8.config;
+
+import com.example.redisdemojdk8.util.RedisCommandStats;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * RedisUtils方法耗时统计
+ * <p>对RedisUtils的每个public方法计时，按方法名写入 {@link RedisCommandStats}，重载方法合并统计。
+ * RedisUtils内部的相互调用不经过代理，只统计业务代码发起的调用。结果见 /redis/stats/commands</p>
+ *
+ * @author Kent HAN
+ * @date 2023/12/26 15:00
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(prefix = "redis.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class RedisMetricsAspect {
+
+    @Resource
+    private RedisCommandStats redisCommandStats;
+
+    @Around("execution(public * com.example.redisdemojdk8.util.RedisUtils.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = joinPoint.proceed();
+            failed = false;
+            return result;
+        } finally {
+            redisCommandStats.record(joinPoint.getSignature().getName(), System.nanoTime() - start, failed);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.redisdemojdk8.controller;
+
+import com.example.redisdemojdk8.service.LuaDemo;
+import com.example.redisdemojdk8.util.MonitoredJedisPool;
+import com.example.redisdemojdk8.util.NearCache;
+import com.example.redisdemojdk8.util.RedisCommandStats;
+import com.example.redisdemojdk8.util.RedisKeyStats;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import redis.clients.jedis.JedisPool;
+
+import javax.annotation.Resource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Redis访问统计接口
+ *
+ * @author Kent HAN
+ * @date 2023/12/20 11:02
+ */
+@RestController
+@RequestMapping("/redis/stats")
+public class RedisStatsController {
+
+    @Resource
+    private RedisKeyStats redisKeyStats;
+
+    @Resource
+    private NearCache nearCache;
+
+    @Resource
+    private RedisCommandStats redisCommandStats;
+
+    @Resource
+    private JedisPool jedisPool;
+
+    @Resource
+    private LuaDemo luaDemo;
+
+    /**
+     * 热Key、大Key和按前缀统计的值大小
+     * @param limit 热Key和大Key的返回数量
+     * @return 统计结果
+     */
+    @GetMapping("/keys")
+    public Map<String, Object> keys(@RequestParam(defaultValue = "20") int limit) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hotKeys", redisKeyStats.hotKeys(limit));
+        result.put("largestKeys", redisKeyStats.largestKeys(limit));
+        result.put("prefixSizes", redisKeyStats.prefixSizes());
+        return result;
+    }
+
+    /**
+     * 清空热Key和大Key统计
+     */
+    @PostMapping("/keys/reset")
+    public void resetKeys() {
+        redisKeyStats.reset();
+    }
+
+    /**
+     * 近端缓存命中情况
+     * @return 统计结果
+     */
+    @GetMapping("/near-cache")
+    public Map<String, Object> nearCache() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", nearCache.size());
+        result.put("hits", nearCache.getHitCount());
+        result.put("misses", nearCache.getMissCount());
+        result.put("evictions", nearCache.getEvictionCount());
+        result.put("invalidations", nearCache.getInvalidationCount());
+        return result;
+    }
+
+    /**
+     * RedisUtils各方法的调用次数、错误数和延迟分位数
+     * @return 方法名到统计结果的映射
+     */
+    @GetMapping("/commands")
+    public Map<String, Map<String, Object>> commands() {
+        return redisCommandStats.snapshot();
+    }
+
+    /**
+     * 清空方法耗时统计
+     */
+    @PostMapping("/commands/reset")
+    public void resetCommands() {
+        redisCommandStats.reset();
+    }
+
+    /**
+     * JedisPool连接数、借用等待时间和耗尽次数
+     * @return 统计结果
+     */
+    @GetMapping("/pool")
+    public Map<String, Object> pool() {
+        if (jedisPool instanceof MonitoredJedisPool) {
+            return ((MonitoredJedisPool) jedisPool).stats();
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("active", jedisPool.getNumActive());
+        result.put("idle", jedisPool.getNumIdle());
+        result.put("waiters", jedisPool.getNumWaiters());
+        result.put("meanBorrowWaitMillis", jedisPool.getMeanBorrowWaitTimeMillis());
+        result.put("maxBorrowWaitMillis", jedisPool.getMaxBorrowWaitTimeMillis());
+        return result;
+    }
+
+    /**
+     * 清空借用等待时间和耗尽次数
+     */
+    @PostMapping("/pool/reset")
+    public void resetPool() {
+        if (jedisPool instanceof MonitoredJedisPool) {
+            ((MonitoredJedisPool) jedisPool).resetStats();
+        }
+    }
+
+    /**
+     * Lua脚本注册表中各脚本的SHA1、调用次数、错误数和延迟分位数
+     * @return 统计结果
+     */
+    @GetMapping("/scripts")
+    public Map<String, Object> scripts() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("scripts", luaDemo.scripts());
+        result.put("reloads", luaDemo.getReloadCount());
+        result.put("calls", luaDemo.stats());
+        return result;
+    }
+
+    /**
+     * 清空脚本调用统计
+     */
+    @PostMapping("/scripts/reset")
+    public void resetScripts() {
+        luaDemo.resetStats();
+    }
+}
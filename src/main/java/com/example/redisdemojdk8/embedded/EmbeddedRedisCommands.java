@@ -0,0 +1,1718 @@
+package com.example.redisdemojdk8.embedded;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * @description: 内嵌Redis的数据和命令实现
+ * <p>支持字符串、hash、set、list、zset的常用命令，以及过期时间、SCAN、EVAL和发布订阅。
+ * 所有命令在同一把锁内串行执行，与Redis单线程执行命令的语义一致；过期Key在访问时惰性删除，
+ * 并由服务端定时清理。</p>
+ * @author Kent HAN
+ * @date 2023/12/25 10:00
+ */
+final class EmbeddedRedisCommands {
+
+    static final int DATABASES = 16;
+
+    private static final String WRONGTYPE = "WRONGTYPE Operation against a key holding the wrong kind of value";
+
+    /**
+     * 保留的SCAN游标数量，超过后最早的游标失效
+     */
+    private static final int MAX_SCAN_CURSORS = 4096;
+
+    /**
+     * 脚本中不允许执行的命令
+     */
+    private static final Set<String> SCRIPT_DENIED = new HashSet<>(Arrays.asList(
+            "EVAL", "EVALSHA", "SCRIPT", "SUBSCRIBE", "PSUBSCRIBE", "UNSUBSCRIBE", "PUNSUBSCRIBE",
+            "SELECT", "AUTH", "HELLO", "QUIT", "CLIENT", "FLUSHALL"));
+
+    private final Database[] databases = new Database[DATABASES];
+
+    private final EmbeddedRedisServer server;
+
+    private final EmbeddedRedisScripting scripting = new EmbeddedRedisScripting(this);
+
+    private final Map<String, String> config = new HashMap<>();
+
+    private long commandCount;
+
+    EmbeddedRedisCommands(EmbeddedRedisServer server) {
+        this.server = server;
+        for (int i = 0; i < DATABASES; i++) {
+            databases[i] = new Database();
+        }
+    }
+
+    /**
+     * 客户端会话状态
+     */
+    static final class Session {
+
+        int db;
+
+        boolean inScript;
+    }
+
+    /**
+     * 命令执行失败，message需要带错误前缀
+     */
+    static final class CommandException extends RuntimeException {
+
+        CommandException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * @description: 执行一条命令，调用方需要持有当前对象的锁
+     * @param session 客户端会话
+     * @param args 命令和参数
+     * @return 回复
+     */
+    Object execute(Session session, List<String> args) {
+        try {
+            return dispatch(session, args);
+        } catch (CommandException e) {
+            return new RespProtocol.Error(e.getMessage());
+        }
+    }
+
+    /**
+     * @description: 执行一条命令，失败时抛出CommandException，供脚本调用
+     */
+    Object call(Session session, List<String> args) {
+        String name = args.get(0).toUpperCase(Locale.ROOT);
+        if (SCRIPT_DENIED.contains(name)) {
+            throw new CommandException("ERR This Redis command is not allowed from script");
+        }
+        return dispatch(session, args);
+    }
+
+    long getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * @description: 清理所有库中已过期的Key
+     * @return 清理的数量
+     */
+    int purgeExpired() {
+        long now = System.currentTimeMillis();
+        int purged = 0;
+        for (Database db : databases) {
+            Iterator<String> iterator = db.volatileKeys.iterator();
+            while (iterator.hasNext()) {
+                String key = iterator.next();
+                Entry entry = db.keys.get(key);
+                if (entry == null) {
+                    iterator.remove();
+                } else if (entry.expired(now)) {
+                    db.keys.remove(key);
+                    iterator.remove();
+                    purged++;
+                }
+            }
+        }
+        return purged;
+    }
+
+    private Object dispatch(Session session, List<String> args) {
+        commandCount++;
+        String name = args.get(0).toUpperCase(Locale.ROOT);
+        Database db = databases[session.db];
+        switch (name) {
+            // 连接和服务端
+            case "PING":
+                return args.size() > 1 ? args.get(1) : new RespProtocol.Status("PONG");
+            case "ECHO":
+                arity(args, 2);
+                return args.get(1);
+            case "AUTH":
+            case "QUIT":
+                return RespProtocol.OK;
+            case "SELECT":
+                arity(args, 2);
+                int index = (int) parseLong(args.get(1));
+                if (index < 0 || index >= DATABASES) {
+                    throw new CommandException("ERR DB index is out of range");
+                }
+                session.db = index;
+                return RespProtocol.OK;
+            case "CLIENT":
+                return client(args);
+            case "CONFIG":
+                return config(args);
+            case "INFO":
+                return info();
+            case "TIME":
+                long micros = System.currentTimeMillis() * 1000;
+                return Arrays.asList(Long.toString(micros / 1_000_000), Long.toString(micros % 1_000_000));
+            case "COMMAND":
+                return Collections.emptyList();
+            case "DBSIZE":
+                return (long) db.size();
+            case "FLUSHDB":
+                db.clear();
+                return RespProtocol.OK;
+            case "FLUSHALL":
+                for (Database each : databases) {
+                    each.clear();
+                }
+                return RespProtocol.OK;
+            case "PUBLISH":
+                arity(args, 3);
+                return server.publish(args.get(1), args.get(2));
+
+            // Key
+            case "DEL":
+            case "UNLINK":
+                return del(db, args);
+            case "EXISTS":
+                return exists(db, args);
+            case "TYPE":
+                arity(args, 2);
+                return new RespProtocol.Status(typeOf(db.get(args.get(1))));
+            case "EXPIRE":
+                arity(args, 3);
+                return expire(db, args.get(1), System.currentTimeMillis() + parseLong(args.get(2)) * 1000);
+            case "PEXPIRE":
+                arity(args, 3);
+                return expire(db, args.get(1), System.currentTimeMillis() + parseLong(args.get(2)));
+            case "EXPIREAT":
+                arity(args, 3);
+                return expire(db, args.get(1), parseLong(args.get(2)) * 1000);
+            case "PEXPIREAT":
+                arity(args, 3);
+                return expire(db, args.get(1), parseLong(args.get(2)));
+            case "TTL":
+                arity(args, 2);
+                return ttl(db, args.get(1), 1000);
+            case "PTTL":
+                arity(args, 2);
+                return ttl(db, args.get(1), 1);
+            case "PERSIST":
+                arity(args, 2);
+                return persist(db, args.get(1));
+            case "RENAME":
+                arity(args, 3);
+                return rename(db, args.get(1), args.get(2));
+            case "KEYS":
+                arity(args, 2);
+                return keys(db, args.get(1));
+            case "SCAN":
+                return scan(db, args);
+
+            // 字符串
+            case "GET":
+                arity(args, 2);
+                return getString(db, args.get(1));
+            case "SET":
+                return set(db, args);
+            case "SETNX":
+                arity(args, 3);
+                return setIfAbsent(db, args.get(1), args.get(2));
+            case "SETEX":
+                arity(args, 4);
+                return setWithTtl(db, args.get(1), args.get(3), parseLong(args.get(2)) * 1000);
+            case "PSETEX":
+                arity(args, 4);
+                return setWithTtl(db, args.get(1), args.get(3), parseLong(args.get(2)));
+            case "GETSET":
+                arity(args, 3);
+                String previous = getString(db, args.get(1));
+                db.put(args.get(1), args.get(2));
+                return previous;
+            case "GETDEL":
+                arity(args, 2);
+                String removed = getString(db, args.get(1));
+                db.remove(args.get(1));
+                return removed;
+            case "MGET":
+                return mget(db, args);
+            case "MSET":
+                return mset(db, args);
+            case "MSETNX":
+                return msetnx(db, args);
+            case "INCR":
+                arity(args, 2);
+                return incrBy(db, args.get(1), 1);
+            case "DECR":
+                arity(args, 2);
+                return incrBy(db, args.get(1), -1);
+            case "INCRBY":
+                arity(args, 3);
+                return incrBy(db, args.get(1), parseLong(args.get(2)));
+            case "DECRBY":
+                arity(args, 3);
+                return incrBy(db, args.get(1), -parseLong(args.get(2)));
+            case "INCRBYFLOAT":
+                arity(args, 3);
+                return incrByFloat(db, args.get(1), parseDouble(args.get(2)));
+            case "APPEND":
+                arity(args, 3);
+                return append(db, args.get(1), args.get(2));
+            case "STRLEN":
+                arity(args, 2);
+                String text = getString(db, args.get(1));
+                return (long) (text == null ? 0 : text.length());
+
+            // hash
+            case "HSET":
+            case "HMSET":
+                return hset(db, args, "HMSET".equals(name));
+            case "HSETNX":
+                arity(args, 4);
+                return hsetnx(db, args.get(1), args.get(2), args.get(3));
+            case "HGET":
+                arity(args, 3);
+                Map<String, String> hash = getTyped(db, args.get(1), LinkedHashMap.class);
+                return hash == null ? null : hash.get(args.get(2));
+            case "HMGET":
+                return hmget(db, args);
+            case "HGETALL":
+                arity(args, 2);
+                return hgetall(db, args.get(1));
+            case "HDEL":
+                return hdel(db, args);
+            case "HEXISTS":
+                arity(args, 3);
+                Map<String, String> fields = getTyped(db, args.get(1), LinkedHashMap.class);
+                return fields != null && fields.containsKey(args.get(2)) ? 1L : 0L;
+            case "HLEN":
+                arity(args, 2);
+                return (long) sizeOf(getTyped(db, args.get(1), LinkedHashMap.class));
+            case "HKEYS":
+                arity(args, 2);
+                return hashPart(db, args.get(1), true);
+            case "HVALS":
+                arity(args, 2);
+                return hashPart(db, args.get(1), false);
+            case "HINCRBY":
+                arity(args, 4);
+                return hincrBy(db, args.get(1), args.get(2), parseLong(args.get(3)));
+            case "HINCRBYFLOAT":
+                arity(args, 4);
+                return hincrByFloat(db, args.get(1), args.get(2), parseDouble(args.get(3)));
+            case "HSCAN":
+                return hscan(db, args);
+
+            // set
+            case "SADD":
+                return sadd(db, args);
+            case "SREM":
+                return srem(db, args);
+            case "SMEMBERS":
+                arity(args, 2);
+                Set<String> members = getTyped(db, args.get(1), LinkedHashSet.class);
+                return members == null ? Collections.emptyList() : new ArrayList<>(members);
+            case "SISMEMBER":
+                arity(args, 3);
+                Set<String> set = getTyped(db, args.get(1), LinkedHashSet.class);
+                return set != null && set.contains(args.get(2)) ? 1L : 0L;
+            case "SMISMEMBER":
+                return smismember(db, args);
+            case "SCARD":
+                arity(args, 2);
+                return (long) sizeOf(getTyped(db, args.get(1), LinkedHashSet.class));
+            case "SPOP":
+                return spop(db, args);
+            case "SRANDMEMBER":
+                return srandmember(db, args);
+            case "SSCAN":
+                return sscan(db, args);
+
+            // list
+            case "LPUSH":
+            case "RPUSH":
+                return push(db, args, "LPUSH".equals(name));
+            case "LPOP":
+            case "RPOP":
+                return pop(db, args, "LPOP".equals(name));
+            case "LRANGE":
+                arity(args, 4);
+                return lrange(db, args.get(1), parseLong(args.get(2)), parseLong(args.get(3)));
+            case "LLEN":
+                arity(args, 2);
+                return (long) sizeOf(getTyped(db, args.get(1), LinkedList.class));
+            case "LINDEX":
+                arity(args, 3);
+                return lindex(db, args.get(1), parseLong(args.get(2)));
+            case "LSET":
+                arity(args, 4);
+                return lset(db, args.get(1), parseLong(args.get(2)), args.get(3));
+            case "LREM":
+                arity(args, 4);
+                return lrem(db, args.get(1), parseLong(args.get(2)), args.get(3));
+            case "LTRIM":
+                arity(args, 4);
+                return ltrim(db, args.get(1), parseLong(args.get(2)), parseLong(args.get(3)));
+
+            // zset
+            case "ZADD":
+                return zadd(db, args);
+            case "ZREM":
+                return zrem(db, args);
+            case "ZSCORE":
+                arity(args, 3);
+                SortedSetValue zset = getTyped(db, args.get(1), SortedSetValue.class);
+                Double score = zset == null ? null : zset.scores.get(args.get(2));
+                return score == null ? null : formatDouble(score);
+            case "ZINCRBY":
+                arity(args, 4);
+                return zincrBy(db, args.get(1), parseDouble(args.get(2)), args.get(3));
+            case "ZCARD":
+                arity(args, 2);
+                SortedSetValue sized = getTyped(db, args.get(1), SortedSetValue.class);
+                return (long) (sized == null ? 0 : sized.scores.size());
+            case "ZCOUNT":
+                arity(args, 4);
+                return (long) zrangeByScore(db, args.get(1), args.get(2), args.get(3), 0, -1).size();
+            case "ZRANK":
+            case "ZREVRANK":
+                arity(args, 3);
+                return zrank(db, args.get(1), args.get(2), "ZREVRANK".equals(name));
+            case "ZRANGE":
+            case "ZREVRANGE":
+                return zrange(db, args, "ZREVRANGE".equals(name));
+            case "ZRANGEBYSCORE":
+                return zrangeByScore(db, args);
+            case "ZREMRANGEBYSCORE":
+                arity(args, 4);
+                return zremRangeByScore(db, args.get(1), args.get(2), args.get(3));
+            case "ZREMRANGEBYRANK":
+                arity(args, 4);
+                return zremRangeByRank(db, args.get(1), parseLong(args.get(2)), parseLong(args.get(3)));
+
+            // 脚本
+            case "EVAL":
+                return eval(session, args, false);
+            case "EVALSHA":
+                return eval(session, args, true);
+            case "SCRIPT":
+                return script(args);
+
+            default:
+                throw new CommandException("ERR unknown command '" + args.get(0) + "'");
+        }
+    }
+
+    // ---------------------------------------------------------------- 连接和服务端
+
+    private Object client(List<String> args) {
+        arity(args, 2);
+        switch (args.get(1).toUpperCase(Locale.ROOT)) {
+            case "GETNAME":
+                return null;
+            case "ID":
+                return 1L;
+            case "LIST":
+                return "";
+            default:
+                return RespProtocol.OK;
+        }
+    }
+
+    private Object config(List<String> args) {
+        arity(args, 3);
+        String sub = args.get(1).toUpperCase(Locale.ROOT);
+        if ("SET".equals(sub)) {
+            arity(args, 4);
+            config.put(args.get(2).toLowerCase(Locale.ROOT), args.get(3));
+            return RespProtocol.OK;
+        }
+        if ("GET".equals(sub)) {
+            List<String> reply = new ArrayList<>();
+            for (Map.Entry<String, String> entry : config.entrySet()) {
+                if (globMatch(args.get(2).toLowerCase(Locale.ROOT), entry.getKey())) {
+                    reply.add(entry.getKey());
+                    reply.add(entry.getValue());
+                }
+            }
+            return reply;
+        }
+        return RespProtocol.OK;
+    }
+
+    private Object info() {
+        StringBuilder info = new StringBuilder();
+        info.append("# Server\r\nredis_version:6.2.0\r\nredis_mode:standalone\r\n")
+                .append("tcp_port:").append(server.getPort()).append("\r\n")
+                .append("# Stats\r\ntotal_commands_processed:").append(commandCount).append("\r\n")
+                .append("# Keyspace\r\n");
+        for (int i = 0; i < DATABASES; i++) {
+            if (databases[i].keys.size() > 0) {
+                info.append("db").append(i).append(":keys=").append(databases[i].keys.size())
+                        .append(",expires=").append(databases[i].volatileKeys.size()).append("\r\n");
+            }
+        }
+        return info.toString();
+    }
+
+    // ---------------------------------------------------------------- Key
+
+    private Object del(Database db, List<String> args) {
+        arity(args, 2);
+        long removed = 0;
+        for (int i = 1; i < args.size(); i++) {
+            if (db.get(args.get(i)) != null) {
+                db.remove(args.get(i));
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private Object exists(Database db, List<String> args) {
+        arity(args, 2);
+        long count = 0;
+        for (int i = 1; i < args.size(); i++) {
+            if (db.get(args.get(i)) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Object expire(Database db, String key, long expireAt) {
+        Entry entry = db.get(key);
+        if (entry == null) {
+            return 0L;
+        }
+        db.expireAt(key, entry, expireAt);
+        return 1L;
+    }
+
+    private Object ttl(Database db, String key, long unit) {
+        Entry entry = db.get(key);
+        if (entry == null) {
+            return -2L;
+        }
+        if (entry.expireAt < 0) {
+            return -1L;
+        }
+        long remaining = entry.expireAt - System.currentTimeMillis();
+        return unit == 1 ? remaining : (remaining + unit / 2) / unit;
+    }
+
+    private Object persist(Database db, String key) {
+        Entry entry = db.get(key);
+        if (entry == null || entry.expireAt < 0) {
+            return 0L;
+        }
+        entry.expireAt = -1;
+        db.volatileKeys.remove(key);
+        return 1L;
+    }
+
+    private Object rename(Database db, String key, String newKey) {
+        Entry entry = db.get(key);
+        if (entry == null) {
+            throw new CommandException("ERR no such key");
+        }
+        db.remove(key);
+        db.remove(newKey);
+        db.keys.put(newKey, entry);
+        if (entry.expireAt >= 0) {
+            db.volatileKeys.add(newKey);
+        }
+        return RespProtocol.OK;
+    }
+
+    private Object keys(Database db, String pattern) {
+        List<String> reply = new ArrayList<>();
+        String prefix = literalPrefix(pattern);
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Entry> entry : candidates(db, pattern, null).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            if (!entry.getValue().expired(now) && globMatch(pattern, entry.getKey())) {
+                reply.add(entry.getKey());
+            }
+        }
+        return reply;
+    }
+
+    /**
+     * SCAN的游标是服务端登记的"上次返回到的Key"，Key按字典序遍历，
+     * 遍历期间一直存在的Key一定会返回且只返回一次
+     */
+    private Object scan(Database db, List<String> args) {
+        arity(args, 2);
+        long cursor = parseLong(args.get(1));
+        String pattern = null;
+        long count = 10;
+        String type = null;
+        for (int i = 2; i < args.size(); i++) {
+            String option = args.get(i).toUpperCase(Locale.ROOT);
+            if (i + 1 >= args.size()) {
+                throw new CommandException("ERR syntax error");
+            }
+            if ("MATCH".equals(option)) {
+                pattern = args.get(++i);
+            } else if ("COUNT".equals(option)) {
+                count = Math.max(1, parseLong(args.get(++i)));
+            } else if ("TYPE".equals(option)) {
+                type = args.get(++i).toLowerCase(Locale.ROOT);
+            } else {
+                throw new CommandException("ERR syntax error");
+            }
+        }
+        String after = null;
+        if (cursor != 0) {
+            after = db.scanCursors.remove(cursor);
+            if (after == null) {
+                throw new CommandException("ERR invalid cursor");
+            }
+        }
+        String prefix = pattern == null ? "" : literalPrefix(pattern);
+        List<String> keys = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        String last = null;
+        int visited = 0;
+        boolean finished = true;
+        for (Map.Entry<String, Entry> entry : candidates(db, pattern, after).entrySet()) {
+            String key = entry.getKey();
+            if (!prefix.isEmpty() && !key.startsWith(prefix)) {
+                break;
+            }
+            if (visited >= count) {
+                finished = false;
+                break;
+            }
+            visited++;
+            last = key;
+            if (entry.getValue().expired(now)
+                    || (pattern != null && !globMatch(pattern, key))
+                    || (type != null && !type.equals(typeOf(entry.getValue())))) {
+                continue;
+            }
+            keys.add(key);
+        }
+        String next = "0";
+        if (!finished) {
+            long id = ++db.lastScanCursor;
+            db.scanCursors.put(id, last);
+            next = Long.toString(id);
+        }
+        return Arrays.asList(next, keys);
+    }
+
+    /**
+     * 按模式的固定前缀缩小遍历范围
+     */
+    private static NavigableMap<String, Entry> candidates(Database db, String pattern, String after) {
+        String prefix = pattern == null ? "" : literalPrefix(pattern);
+        if (after != null) {
+            return db.keys.tailMap(after, false);
+        }
+        return prefix.isEmpty() ? db.keys : db.keys.tailMap(prefix, true);
+    }
+
+    /**
+     * 模式中第一个通配符之前的固定前缀
+     */
+    private static String literalPrefix(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '\\') {
+                return pattern.substring(0, i);
+            }
+        }
+        return pattern;
+    }
+
+    // ---------------------------------------------------------------- 字符串
+
+    private Object set(Database db, List<String> args) {
+        arity(args, 3);
+        String key = args.get(1);
+        boolean nx = false;
+        boolean xx = false;
+        boolean get = false;
+        boolean keepTtl = false;
+        long expireAt = -1;
+        for (int i = 3; i < args.size(); i++) {
+            String option = args.get(i).toUpperCase(Locale.ROOT);
+            switch (option) {
+                case "NX":
+                    nx = true;
+                    break;
+                case "XX":
+                    xx = true;
+                    break;
+                case "GET":
+                    get = true;
+                    break;
+                case "KEEPTTL":
+                    keepTtl = true;
+                    break;
+                case "EX":
+                case "PX":
+                case "EXAT":
+                case "PXAT":
+                    if (i + 1 >= args.size()) {
+                        throw new CommandException("ERR syntax error");
+                    }
+                    long amount = parseLong(args.get(++i));
+                    if (amount <= 0) {
+                        throw new CommandException("ERR invalid expire time in 'set' command");
+                    }
+                    long now = System.currentTimeMillis();
+                    expireAt = "EX".equals(option) ? now + amount * 1000
+                            : "PX".equals(option) ? now + amount
+                            : "EXAT".equals(option) ? amount * 1000 : amount;
+                    break;
+                default:
+                    throw new CommandException("ERR syntax error");
+            }
+        }
+        Entry existing = db.get(key);
+        Object previous = null;
+        if (get) {
+            previous = getString(db, key);
+        }
+        if ((nx && existing != null) || (xx && existing == null)) {
+            return get ? previous : null;
+        }
+        long keptExpireAt = keepTtl && existing != null ? existing.expireAt : -1;
+        Entry entry = db.put(key, args.get(2));
+        if (expireAt >= 0) {
+            db.expireAt(key, entry, expireAt);
+        } else if (keptExpireAt >= 0) {
+            db.expireAt(key, entry, keptExpireAt);
+        }
+        return get ? previous : RespProtocol.OK;
+    }
+
+    private Object setIfAbsent(Database db, String key, String value) {
+        if (db.get(key) != null) {
+            return 0L;
+        }
+        db.put(key, value);
+        return 1L;
+    }
+
+    private Object setWithTtl(Database db, String key, String value, long ttlMillis) {
+        if (ttlMillis <= 0) {
+            throw new CommandException("ERR invalid expire time in 'setex' command");
+        }
+        Entry entry = db.put(key, value);
+        db.expireAt(key, entry, System.currentTimeMillis() + ttlMillis);
+        return RespProtocol.OK;
+    }
+
+    private Object mget(Database db, List<String> args) {
+        arity(args, 2);
+        List<String> reply = new ArrayList<>(args.size() - 1);
+        for (int i = 1; i < args.size(); i++) {
+            Entry entry = db.get(args.get(i));
+            reply.add(entry != null && entry.value instanceof String ? (String) entry.value : null);
+        }
+        return reply;
+    }
+
+    private Object mset(Database db, List<String> args) {
+        if (args.size() < 3 || args.size() % 2 == 0) {
+            throw wrongArity(args);
+        }
+        for (int i = 1; i < args.size(); i += 2) {
+            db.put(args.get(i), args.get(i + 1));
+        }
+        return RespProtocol.OK;
+    }
+
+    private Object msetnx(Database db, List<String> args) {
+        if (args.size() < 3 || args.size() % 2 == 0) {
+            throw wrongArity(args);
+        }
+        for (int i = 1; i < args.size(); i += 2) {
+            if (db.get(args.get(i)) != null) {
+                return 0L;
+            }
+        }
+        mset(db, args);
+        return 1L;
+    }
+
+    private Object incrBy(Database db, String key, long delta) {
+        String current = getString(db, key);
+        long value = current == null ? 0 : parseLong(current);
+        if ((delta > 0 && value > Long.MAX_VALUE - delta) || (delta < 0 && value < Long.MIN_VALUE - delta)) {
+            throw new CommandException("ERR increment or decrement would overflow");
+        }
+        value += delta;
+        db.update(key, Long.toString(value));
+        return value;
+    }
+
+    private Object incrByFloat(Database db, String key, double delta) {
+        String current = getString(db, key);
+        double value = (current == null ? 0 : parseDouble(current)) + delta;
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new CommandException("ERR increment would produce NaN or Infinity");
+        }
+        String text = formatDouble(value);
+        db.update(key, text);
+        return text;
+    }
+
+    private Object append(Database db, String key, String suffix) {
+        String current = getString(db, key);
+        String value = current == null ? suffix : current + suffix;
+        db.update(key, value);
+        return (long) value.length();
+    }
+
+    // ---------------------------------------------------------------- hash
+
+    private Object hset(Database db, List<String> args, boolean legacy) {
+        if (args.size() < 4 || args.size() % 2 != 0) {
+            throw wrongArity(args);
+        }
+        Map<String, String> hash = getOrCreate(db, args.get(1), LinkedHashMap.class, LinkedHashMap::new);
+        long added = 0;
+        for (int i = 2; i < args.size(); i += 2) {
+            if (hash.put(args.get(i), args.get(i + 1)) == null) {
+                added++;
+            }
+        }
+        return legacy ? RespProtocol.OK : (Object) added;
+    }
+
+    private Object hsetnx(Database db, String key, String field, String value) {
+        Map<String, String> hash = getOrCreate(db, key, LinkedHashMap.class, LinkedHashMap::new);
+        return hash.putIfAbsent(field, value) == null ? 1L : 0L;
+    }
+
+    private Object hmget(Database db, List<String> args) {
+        arity(args, 3);
+        Map<String, String> hash = getTyped(db, args.get(1), LinkedHashMap.class);
+        List<String> reply = new ArrayList<>(args.size() - 2);
+        for (int i = 2; i < args.size(); i++) {
+            reply.add(hash == null ? null : hash.get(args.get(i)));
+        }
+        return reply;
+    }
+
+    private Object hgetall(Database db, String key) {
+        Map<String, String> hash = getTyped(db, key, LinkedHashMap.class);
+        if (hash == null) {
+            return Collections.emptyList();
+        }
+        List<String> reply = new ArrayList<>(hash.size() * 2);
+        for (Map.Entry<String, String> entry : hash.entrySet()) {
+            reply.add(entry.getKey());
+            reply.add(entry.getValue());
+        }
+        return reply;
+    }
+
+    private Object hdel(Database db, List<String> args) {
+        arity(args, 3);
+        Map<String, String> hash = getTyped(db, args.get(1), LinkedHashMap.class);
+        if (hash == null) {
+            return 0L;
+        }
+        long removed = 0;
+        for (int i = 2; i < args.size(); i++) {
+            if (hash.remove(args.get(i)) != null) {
+                removed++;
+            }
+        }
+        db.removeIfEmpty(args.get(1), hash.isEmpty());
+        return removed;
+    }
+
+    private Object hashPart(Database db, String key, boolean keys) {
+        Map<String, String> hash = getTyped(db, key, LinkedHashMap.class);
+        if (hash == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(keys ? hash.keySet() : hash.values());
+    }
+
+    private Object hincrBy(Database db, String key, String field, long delta) {
+        Map<String, String> hash = getOrCreate(db, key, LinkedHashMap.class, LinkedHashMap::new);
+        String current = hash.get(field);
+        long value;
+        try {
+            value = current == null ? 0 : Long.parseLong(current);
+        } catch (NumberFormatException e) {
+            db.removeIfEmpty(key, hash.isEmpty());
+            throw new CommandException("ERR hash value is not an integer");
+        }
+        value += delta;
+        hash.put(field, Long.toString(value));
+        return value;
+    }
+
+    private Object hincrByFloat(Database db, String key, String field, double delta) {
+        Map<String, String> hash = getOrCreate(db, key, LinkedHashMap.class, LinkedHashMap::new);
+        String current = hash.get(field);
+        double value;
+        try {
+            value = (current == null ? 0 : Double.parseDouble(current)) + delta;
+        } catch (NumberFormatException e) {
+            db.removeIfEmpty(key, hash.isEmpty());
+            throw new CommandException("ERR hash value is not a float");
+        }
+        String text = formatDouble(value);
+        hash.put(field, text);
+        return text;
+    }
+
+    /**
+     * HSCAN一次返回全部匹配的字段
+     */
+    private Object hscan(Database db, List<String> args) {
+        arity(args, 3);
+        String pattern = scanMatch(args);
+        Map<String, String> hash = getTyped(db, args.get(1), LinkedHashMap.class);
+        List<String> items = new ArrayList<>();
+        if (hash != null) {
+            for (Map.Entry<String, String> entry : hash.entrySet()) {
+                if (pattern == null || globMatch(pattern, entry.getKey())) {
+                    items.add(entry.getKey());
+                    items.add(entry.getValue());
+                }
+            }
+        }
+        return Arrays.asList("0", items);
+    }
+
+    // ---------------------------------------------------------------- set
+
+    private Object sadd(Database db, List<String> args) {
+        arity(args, 3);
+        Set<String> set = getOrCreate(db, args.get(1), LinkedHashSet.class, LinkedHashSet::new);
+        long added = 0;
+        for (int i = 2; i < args.size(); i++) {
+            if (set.add(args.get(i))) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private Object srem(Database db, List<String> args) {
+        arity(args, 3);
+        Set<String> set = getTyped(db, args.get(1), LinkedHashSet.class);
+        if (set == null) {
+            return 0L;
+        }
+        long removed = 0;
+        for (int i = 2; i < args.size(); i++) {
+            if (set.remove(args.get(i))) {
+                removed++;
+            }
+        }
+        db.removeIfEmpty(args.get(1), set.isEmpty());
+        return removed;
+    }
+
+    private Object smismember(Database db, List<String> args) {
+        arity(args, 3);
+        Set<String> set = getTyped(db, args.get(1), LinkedHashSet.class);
+        List<Long> reply = new ArrayList<>(args.size() - 2);
+        for (int i = 2; i < args.size(); i++) {
+            reply.add(set != null && set.contains(args.get(i)) ? 1L : 0L);
+        }
+        return reply;
+    }
+
+    private Object spop(Database db, List<String> args) {
+        arity(args, 2);
+        Set<String> set = getTyped(db, args.get(1), LinkedHashSet.class);
+        boolean single = args.size() < 3;
+        long count = single ? 1 : parseLong(args.get(2));
+        List<String> popped = new ArrayList<>();
+        if (set != null) {
+            List<String> members = new ArrayList<>(set);
+            Collections.shuffle(members, ThreadLocalRandom.current());
+            for (int i = 0; i < count && i < members.size(); i++) {
+                set.remove(members.get(i));
+                popped.add(members.get(i));
+            }
+            db.removeIfEmpty(args.get(1), set.isEmpty());
+        }
+        if (single) {
+            return popped.isEmpty() ? null : popped.get(0);
+        }
+        return popped;
+    }
+
+    private Object srandmember(Database db, List<String> args) {
+        arity(args, 2);
+        Set<String> set = getTyped(db, args.get(1), LinkedHashSet.class);
+        List<String> members = set == null ? new ArrayList<>() : new ArrayList<>(set);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (args.size() < 3) {
+            return members.isEmpty() ? null : members.get(random.nextInt(members.size()));
+        }
+        long count = parseLong(args.get(2));
+        List<String> reply = new ArrayList<>();
+        if (count < 0) {
+            for (long i = 0; i < -count && !members.isEmpty(); i++) {
+                reply.add(members.get(random.nextInt(members.size())));
+            }
+            return reply;
+        }
+        Collections.shuffle(members, random);
+        return new ArrayList<>(members.subList(0, (int) Math.min(count, members.size())));
+    }
+
+    private Object sscan(Database db, List<String> args) {
+        arity(args, 3);
+        String pattern = scanMatch(args);
+        Set<String> set = getTyped(db, args.get(1), LinkedHashSet.class);
+        List<String> items = new ArrayList<>();
+        if (set != null) {
+            for (String member : set) {
+                if (pattern == null || globMatch(pattern, member)) {
+                    items.add(member);
+                }
+            }
+        }
+        return Arrays.asList("0", items);
+    }
+
+    // ---------------------------------------------------------------- list
+
+    private Object push(Database db, List<String> args, boolean head) {
+        arity(args, 3);
+        LinkedList<String> list = getOrCreate(db, args.get(1), LinkedList.class, LinkedList::new);
+        for (int i = 2; i < args.size(); i++) {
+            if (head) {
+                list.addFirst(args.get(i));
+            } else {
+                list.addLast(args.get(i));
+            }
+        }
+        return (long) list.size();
+    }
+
+    private Object pop(Database db, List<String> args, boolean head) {
+        arity(args, 2);
+        LinkedList<String> list = getTyped(db, args.get(1), LinkedList.class);
+        boolean single = args.size() < 3;
+        if (list == null) {
+            return single ? null : RespProtocol.NULL_ARRAY;
+        }
+        long count = single ? 1 : parseLong(args.get(2));
+        List<String> popped = new ArrayList<>();
+        while (popped.size() < count && !list.isEmpty()) {
+            popped.add(head ? list.removeFirst() : list.removeLast());
+        }
+        db.removeIfEmpty(args.get(1), list.isEmpty());
+        return single ? popped.get(0) : popped;
+    }
+
+    private Object lrange(Database db, String key, long start, long stop) {
+        LinkedList<String> list = getTyped(db, key, LinkedList.class);
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        long[] range = normalizeRange(start, stop, list.size());
+        List<String> reply = new ArrayList<>();
+        if (range == null) {
+            return reply;
+        }
+        ListIterator<String> iterator = list.listIterator((int) range[0]);
+        for (long i = range[0]; i <= range[1]; i++) {
+            reply.add(iterator.next());
+        }
+        return reply;
+    }
+
+    private Object lindex(Database db, String key, long index) {
+        LinkedList<String> list = getTyped(db, key, LinkedList.class);
+        if (list == null) {
+            return null;
+        }
+        long i = index < 0 ? list.size() + index : index;
+        return i < 0 || i >= list.size() ? null : list.get((int) i);
+    }
+
+    private Object lset(Database db, String key, long index, String value) {
+        LinkedList<String> list = getTyped(db, key, LinkedList.class);
+        if (list == null) {
+            throw new CommandException("ERR no such key");
+        }
+        long i = index < 0 ? list.size() + index : index;
+        if (i < 0 || i >= list.size()) {
+            throw new CommandException("ERR index out of range");
+        }
+        list.set((int) i, value);
+        return RespProtocol.OK;
+    }
+
+    private Object lrem(Database db, String key, long count, String value) {
+        LinkedList<String> list = getTyped(db, key, LinkedList.class);
+        if (list == null) {
+            return 0L;
+        }
+        long limit = count == 0 ? Long.MAX_VALUE : Math.abs(count);
+        long removed = 0;
+        Iterator<String> iterator = count < 0 ? list.descendingIterator() : list.iterator();
+        while (iterator.hasNext() && removed < limit) {
+            if (iterator.next().equals(value)) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        db.removeIfEmpty(key, list.isEmpty());
+        return removed;
+    }
+
+    private Object ltrim(Database db, String key, long start, long stop) {
+        LinkedList<String> list = getTyped(db, key, LinkedList.class);
+        if (list == null) {
+            return RespProtocol.OK;
+        }
+        long[] range = normalizeRange(start, stop, list.size());
+        if (range == null) {
+            list.clear();
+        } else {
+            int size = list.size();
+            for (long i = range[1] + 1; i < size; i++) {
+                list.removeLast();
+            }
+            for (long i = 0; i < range[0]; i++) {
+                list.removeFirst();
+            }
+        }
+        db.removeIfEmpty(key, list.isEmpty());
+        return RespProtocol.OK;
+    }
+
+    // ---------------------------------------------------------------- zset
+
+    private Object zadd(Database db, List<String> args) {
+        arity(args, 4);
+        int i = 2;
+        boolean nx = false;
+        boolean xx = false;
+        boolean ch = false;
+        boolean incr = false;
+        for (; i < args.size(); i++) {
+            String option = args.get(i).toUpperCase(Locale.ROOT);
+            if ("NX".equals(option)) {
+                nx = true;
+            } else if ("XX".equals(option)) {
+                xx = true;
+            } else if ("CH".equals(option)) {
+                ch = true;
+            } else if ("INCR".equals(option)) {
+                incr = true;
+            } else {
+                break;
+            }
+        }
+        if (i >= args.size() || (args.size() - i) % 2 != 0 || (incr && args.size() - i != 2)) {
+            throw new CommandException("ERR syntax error");
+        }
+        double[] scores = new double[(args.size() - i) / 2];
+        for (int j = 0; j < scores.length; j++) {
+            scores[j] = parseDouble(args.get(i + j * 2));
+        }
+        SortedSetValue zset = getOrCreate(db, args.get(1), SortedSetValue.class, SortedSetValue::new);
+        long added = 0;
+        long changed = 0;
+        Double result = null;
+        for (int j = 0; j < scores.length; j++) {
+            String member = args.get(i + j * 2 + 1);
+            Double current = zset.scores.get(member);
+            if ((nx && current != null) || (xx && current == null)) {
+                continue;
+            }
+            double score = incr && current != null ? current + scores[j] : scores[j];
+            if (current == null) {
+                added++;
+            } else if (current != score) {
+                changed++;
+            }
+            zset.put(member, score);
+            result = score;
+        }
+        db.removeIfEmpty(args.get(1), zset.scores.isEmpty());
+        if (incr) {
+            return result == null ? null : formatDouble(result);
+        }
+        return ch ? added + changed : added;
+    }
+
+    private Object zrem(Database db, List<String> args) {
+        arity(args, 3);
+        SortedSetValue zset = getTyped(db, args.get(1), SortedSetValue.class);
+        if (zset == null) {
+            return 0L;
+        }
+        long removed = 0;
+        for (int i = 2; i < args.size(); i++) {
+            if (zset.remove(args.get(i))) {
+                removed++;
+            }
+        }
+        db.removeIfEmpty(args.get(1), zset.scores.isEmpty());
+        return removed;
+    }
+
+    private Object zincrBy(Database db, String key, double delta, String member) {
+        SortedSetValue zset = getOrCreate(db, key, SortedSetValue.class, SortedSetValue::new);
+        Double current = zset.scores.get(member);
+        double score = (current == null ? 0 : current) + delta;
+        zset.put(member, score);
+        return formatDouble(score);
+    }
+
+    private Object zrank(Database db, String key, String member, boolean reverse) {
+        SortedSetValue zset = getTyped(db, key, SortedSetValue.class);
+        if (zset == null || !zset.scores.containsKey(member)) {
+            return null;
+        }
+        long rank = zset.order.headSet(member).size();
+        return reverse ? zset.scores.size() - 1 - rank : rank;
+    }
+
+    private Object zrange(Database db, List<String> args, boolean reverse) {
+        arity(args, 4);
+        boolean withScores = args.size() > 4 && "WITHSCORES".equalsIgnoreCase(args.get(4));
+        SortedSetValue zset = getTyped(db, args.get(1), SortedSetValue.class);
+        if (zset == null) {
+            return Collections.emptyList();
+        }
+        long[] range = normalizeRange(parseLong(args.get(2)), parseLong(args.get(3)), zset.scores.size());
+        List<String> reply = new ArrayList<>();
+        if (range == null) {
+            return reply;
+        }
+        Iterator<String> iterator = reverse ? zset.order.descendingIterator() : zset.order.iterator();
+        for (long i = 0; i <= range[1]; i++) {
+            String member = iterator.next();
+            if (i >= range[0]) {
+                addMember(reply, zset, member, withScores);
+            }
+        }
+        return reply;
+    }
+
+    private Object zrangeByScore(Database db, List<String> args) {
+        arity(args, 4);
+        boolean withScores = false;
+        long offset = 0;
+        long count = -1;
+        for (int i = 4; i < args.size(); i++) {
+            String option = args.get(i).toUpperCase(Locale.ROOT);
+            if ("WITHSCORES".equals(option)) {
+                withScores = true;
+            } else if ("LIMIT".equals(option) && i + 2 < args.size()) {
+                offset = parseLong(args.get(++i));
+                count = parseLong(args.get(++i));
+            } else {
+                throw new CommandException("ERR syntax error");
+            }
+        }
+        SortedSetValue zset = getTyped(db, args.get(1), SortedSetValue.class);
+        List<String> reply = new ArrayList<>();
+        for (String member : zrangeByScore(db, args.get(1), args.get(2), args.get(3), offset, count)) {
+            addMember(reply, zset, member, withScores);
+        }
+        return reply;
+    }
+
+    private List<String> zrangeByScore(Database db, String key, String min, String max, long offset, long count) {
+        SortedSetValue zset = getTyped(db, key, SortedSetValue.class);
+        ScoreBound lower = ScoreBound.parse(min);
+        ScoreBound upper = ScoreBound.parse(max);
+        List<String> members = new ArrayList<>();
+        if (zset == null) {
+            return members;
+        }
+        long skipped = 0;
+        for (String member : zset.order) {
+            double score = zset.scores.get(member);
+            if (!upper.atLeast(score)) {
+                break;
+            }
+            if (!lower.atMost(score)) {
+                continue;
+            }
+            if (skipped++ < offset) {
+                continue;
+            }
+            if (count >= 0 && members.size() >= count) {
+                break;
+            }
+            members.add(member);
+        }
+        return members;
+    }
+
+    private Object zremRangeByScore(Database db, String key, String min, String max) {
+        List<String> members = zrangeByScore(db, key, min, max, 0, -1);
+        SortedSetValue zset = getTyped(db, key, SortedSetValue.class);
+        for (String member : members) {
+            zset.remove(member);
+        }
+        if (zset != null) {
+            db.removeIfEmpty(key, zset.scores.isEmpty());
+        }
+        return (long) members.size();
+    }
+
+    private Object zremRangeByRank(Database db, String key, long start, long stop) {
+        SortedSetValue zset = getTyped(db, key, SortedSetValue.class);
+        if (zset == null) {
+            return 0L;
+        }
+        long[] range = normalizeRange(start, stop, zset.scores.size());
+        if (range == null) {
+            return 0L;
+        }
+        List<String> members = new ArrayList<>();
+        Iterator<String> iterator = zset.order.iterator();
+        for (long i = 0; i <= range[1]; i++) {
+            String member = iterator.next();
+            if (i >= range[0]) {
+                members.add(member);
+            }
+        }
+        for (String member : members) {
+            zset.remove(member);
+        }
+        db.removeIfEmpty(key, zset.scores.isEmpty());
+        return (long) members.size();
+    }
+
+    private static void addMember(List<String> reply, SortedSetValue zset, String member, boolean withScores) {
+        reply.add(member);
+        if (withScores) {
+            reply.add(formatDouble(zset.scores.get(member)));
+        }
+    }
+
+    // ---------------------------------------------------------------- 脚本
+
+    private Object eval(Session session, List<String> args, boolean sha) {
+        arity(args, 3);
+        int numKeys = (int) parseLong(args.get(2));
+        if (numKeys < 0 || numKeys > args.size() - 3) {
+            throw new CommandException("ERR Number of keys can't be greater than number of args");
+        }
+        List<String> keys = args.subList(3, 3 + numKeys);
+        List<String> argv = args.subList(3 + numKeys, args.size());
+        return sha ? scripting.evalSha(session, args.get(1).toLowerCase(Locale.ROOT), keys, argv)
+                : scripting.eval(session, args.get(1), keys, argv);
+    }
+
+    private Object script(List<String> args) {
+        arity(args, 2);
+        switch (args.get(1).toUpperCase(Locale.ROOT)) {
+            case "LOAD":
+                arity(args, 3);
+                return scripting.load(args.get(2));
+            case "EXISTS":
+                List<Long> reply = new ArrayList<>();
+                for (int i = 2; i < args.size(); i++) {
+                    reply.add(scripting.exists(args.get(i).toLowerCase(Locale.ROOT)) ? 1L : 0L);
+                }
+                return reply;
+            case "FLUSH":
+                scripting.flush();
+                return RespProtocol.OK;
+            default:
+                throw new CommandException("ERR unknown subcommand '" + args.get(1) + "'");
+        }
+    }
+
+    // ---------------------------------------------------------------- 工具方法
+
+    private static String getString(Database db, String key) {
+        Entry entry = db.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!(entry.value instanceof String)) {
+            throw new CommandException(WRONGTYPE);
+        }
+        return (String) entry.value;
+    }
+
+    private static <T> T getTyped(Database db, String key, Class<?> type) {
+        Entry entry = db.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!type.isInstance(entry.value)) {
+            throw new CommandException(WRONGTYPE);
+        }
+        return (T) entry.value;
+    }
+
+    private static <T> T getOrCreate(Database db, String key, Class<?> type, Supplier<?> factory) {
+        T value = getTyped(db, key, type);
+        if (value == null) {
+            value = (T) factory.get();
+            db.put(key, value);
+        }
+        return value;
+    }
+
+    private static int sizeOf(Object container) {
+        if (container == null) {
+            return 0;
+        }
+        return container instanceof Map ? ((Map<?, ?>) container).size() : ((Collection<?>) container).size();
+    }
+
+    private static String typeOf(Entry entry) {
+        if (entry == null) {
+            return "none";
+        }
+        Object value = entry.value;
+        if (value instanceof String) {
+            return "string";
+        } else if (value instanceof Map) {
+            return "hash";
+        } else if (value instanceof Set) {
+            return "set";
+        } else if (value instanceof List) {
+            return "list";
+        }
+        return "zset";
+    }
+
+    private static String scanMatch(List<String> args) {
+        for (int i = 3; i + 1 < args.size(); i += 2) {
+            if ("MATCH".equalsIgnoreCase(args.get(i))) {
+                return args.get(i + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 负数下标换算为正数并截断到列表范围，范围为空时返回null
+     */
+    private static long[] normalizeRange(long start, long stop, int size) {
+        if (start < 0) {
+            start = Math.max(0, size + start);
+        }
+        if (stop < 0) {
+            stop = size + stop;
+        }
+        stop = Math.min(stop, size - 1L);
+        return start > stop || start >= size ? null : new long[]{start, stop};
+    }
+
+    private static void arity(List<String> args, int min) {
+        if (args.size() < min) {
+            throw wrongArity(args);
+        }
+    }
+
+    private static CommandException wrongArity(List<String> args) {
+        return new CommandException("ERR wrong number of arguments for '"
+                + args.get(0).toLowerCase(Locale.ROOT) + "' command");
+    }
+
+    static long parseLong(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new CommandException("ERR value is not an integer or out of range");
+        }
+    }
+
+    static double parseDouble(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        if ("inf".equals(lower) || "+inf".equals(lower)) {
+            return Double.POSITIVE_INFINITY;
+        } else if ("-inf".equals(lower)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        try {
+            double value = Double.parseDouble(text);
+            if (Double.isNaN(value)) {
+                throw new NumberFormatException(text);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new CommandException("ERR value is not a valid float");
+        }
+    }
+
+    static String formatDouble(double value) {
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "inf" : "-inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e17) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * @description: Redis风格的通配符匹配，支持 * ? [abc] [^a-z] 和 \ 转义
+     */
+    static boolean globMatch(String pattern, String text) {
+        return globMatch(pattern, 0, text, 0);
+    }
+
+    private static boolean globMatch(String p, int pi, String s, int si) {
+        while (pi < p.length()) {
+            char c = p.charAt(pi);
+            if (c == '*') {
+                while (pi + 1 < p.length() && p.charAt(pi + 1) == '*') {
+                    pi++;
+                }
+                if (pi + 1 == p.length()) {
+                    return true;
+                }
+                for (int i = si; i <= s.length(); i++) {
+                    if (globMatch(p, pi + 1, s, i)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (si >= s.length()) {
+                return false;
+            }
+            if (c == '?') {
+                pi++;
+            } else if (c == '[') {
+                int j = pi + 1;
+                boolean negate = j < p.length() && p.charAt(j) == '^';
+                if (negate) {
+                    j++;
+                }
+                boolean matched = false;
+                char t = s.charAt(si);
+                while (j < p.length() && p.charAt(j) != ']') {
+                    if (p.charAt(j) == '\\' && j + 1 < p.length()) {
+                        matched |= p.charAt(j + 1) == t;
+                        j += 2;
+                    } else if (j + 2 < p.length() && p.charAt(j + 1) == '-' && p.charAt(j + 2) != ']') {
+                        char low = (char) Math.min(p.charAt(j), p.charAt(j + 2));
+                        char high = (char) Math.max(p.charAt(j), p.charAt(j + 2));
+                        matched |= t >= low && t <= high;
+                        j += 3;
+                    } else {
+                        matched |= p.charAt(j) == t;
+                        j++;
+                    }
+                }
+                if (matched == negate) {
+                    return false;
+                }
+                pi = Math.min(j + 1, p.length());
+            } else {
+                if (c == '\\' && pi + 1 < p.length()) {
+                    c = p.charAt(++pi);
+                }
+                if (c != s.charAt(si)) {
+                    return false;
+                }
+                pi++;
+            }
+            si++;
+        }
+        return si == s.length();
+    }
+
+    /**
+     * 单个库的Key空间，按字典序存储以支持SCAN游标
+     */
+    private static final class Database {
+
+        private final TreeMap<String, Entry> keys = new TreeMap<>();
+
+        /**
+         * 设置了过期时间的Key
+         */
+        private final Set<String> volatileKeys = new HashSet<>();
+
+        private final Map<Long, String> scanCursors = new LinkedHashMap<Long, String>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > MAX_SCAN_CURSORS;
+            }
+        };
+
+        private long lastScanCursor;
+
+        private Entry get(String key) {
+            Entry entry = keys.get(key);
+            if (entry != null && entry.expired(System.currentTimeMillis())) {
+                remove(key);
+                return null;
+            }
+            return entry;
+        }
+
+        /**
+         * 写入新值，清除原有的过期时间
+         */
+        private Entry put(String key, Object value) {
+            Entry entry = new Entry(value);
+            keys.put(key, entry);
+            volatileKeys.remove(key);
+            return entry;
+        }
+
+        /**
+         * 修改值，保留原有的过期时间
+         */
+        private void update(String key, Object value) {
+            Entry entry = get(key);
+            if (entry == null) {
+                put(key, value);
+            } else {
+                entry.value = value;
+            }
+        }
+
+        private void remove(String key) {
+            keys.remove(key);
+            volatileKeys.remove(key);
+        }
+
+        private void removeIfEmpty(String key, boolean empty) {
+            if (empty) {
+                remove(key);
+            }
+        }
+
+        private void expireAt(String key, Entry entry, long expireAt) {
+            if (expireAt <= System.currentTimeMillis()) {
+                remove(key);
+                return;
+            }
+            entry.expireAt = expireAt;
+            volatileKeys.add(key);
+        }
+
+        private int size() {
+            long now = System.currentTimeMillis();
+            int size = keys.size();
+            for (String key : volatileKeys) {
+                Entry entry = keys.get(key);
+                if (entry != null && entry.expired(now)) {
+                    size--;
+                }
+            }
+            return size;
+        }
+
+        private void clear() {
+            keys.clear();
+            volatileKeys.clear();
+            scanCursors.clear();
+        }
+    }
+
+    private static final class Entry {
+
+        private Object value;
+
+        /**
+         * 过期时间点（毫秒），-1表示不过期
+         */
+        private long expireAt = -1;
+
+        private Entry(Object value) {
+            this.value = value;
+        }
+
+        private boolean expired(long now) {
+            return expireAt >= 0 && expireAt <= now;
+        }
+    }
+
+    /**
+     * zset：成员到分数的映射，加上按（分数，成员）排序的集合
+     */
+    private static final class SortedSetValue {
+
+        private final Map<String, Double> scores = new HashMap<>();
+
+        private final TreeSet<String> order = new TreeSet<>((a, b) -> {
+            int c = Double.compare(scores.get(a), scores.get(b));
+            return c != 0 ? c : a.compareTo(b);
+        });
+
+        private void put(String member, double score) {
+            if (scores.containsKey(member)) {
+                order.remove(member);
+            }
+            scores.put(member, score);
+            order.add(member);
+        }
+
+        private boolean remove(String member) {
+            if (!scores.containsKey(member)) {
+                return false;
+            }
+            order.remove(member);
+            scores.remove(member);
+            return true;
+        }
+    }
+
+    /**
+     * ZRANGEBYSCORE的分数边界，"("开头表示不包含
+     */
+    private static final class ScoreBound {
+
+        private final double value;
+
+        private final boolean exclusive;
+
+        private ScoreBound(double value, boolean exclusive) {
+            this.value = value;
+            this.exclusive = exclusive;
+        }
+
+        private static ScoreBound parse(String text) {
+            boolean exclusive = text.startsWith("(");
+            return new ScoreBound(parseDouble(exclusive ? text.substring(1) : text), exclusive);
+        }
+
+        /**
+         * 作为下界时，score是否在范围内
+         */
+        private boolean atMost(double score) {
+            return exclusive ? value < score : value <= score;
+        }
+
+        /**
+         * 作为上界时，score是否在范围内
+         */
+        private boolean atLeast(double score) {
+            return exclusive ? value > score : value >= score;
+        }
+    }
+}
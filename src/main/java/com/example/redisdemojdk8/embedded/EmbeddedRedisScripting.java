@@ -0,0 +1,260 @@
+package com.example.redisdemojdk8.embedded;
+
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaInteger;
+import org.luaj.vm2.LuaString;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.OneArgFunction;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.ZeroArgFunction;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @description: 内嵌Redis的Lua脚本执行
+ * <p>基于luaj实现EVAL、EVALSHA和SCRIPT命令，脚本中可以使用KEYS、ARGV、redis.call、redis.pcall、
+ * redis.status_reply、redis.error_reply和redis.sha1hex，类型转换规则与Redis一致。
+ * 不支持cjson等扩展库。脚本在命令锁内执行，执行期间不会穿插其他命令。</p>
+ * @author Kent HAN
+ * @date 2023/12/25 14:00
+ */
+final class EmbeddedRedisScripting {
+
+    private final EmbeddedRedisCommands commands;
+
+    private final Globals globals = JsePlatform.standardGlobals();
+
+    /**
+     * SHA1到编译后的脚本
+     */
+    private final Map<String, LuaValue> functions = new HashMap<>();
+
+    /**
+     * 正在执行脚本的会话
+     */
+    private EmbeddedRedisCommands.Session current;
+
+    EmbeddedRedisScripting(EmbeddedRedisCommands commands) {
+        this.commands = commands;
+        LuaTable redis = new LuaTable();
+        redis.set("call", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return redisCall(args, false);
+            }
+        });
+        redis.set("pcall", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return redisCall(args, true);
+            }
+        });
+        redis.set("status_reply", new OneArgFunction() {
+            @Override
+            public LuaValue call(LuaValue text) {
+                return LuaValue.tableOf(new LuaValue[]{LuaValue.valueOf("ok"), text});
+            }
+        });
+        redis.set("error_reply", new OneArgFunction() {
+            @Override
+            public LuaValue call(LuaValue text) {
+                return LuaValue.tableOf(new LuaValue[]{LuaValue.valueOf("err"), text});
+            }
+        });
+        redis.set("sha1hex", new OneArgFunction() {
+            @Override
+            public LuaValue call(LuaValue text) {
+                return LuaValue.valueOf(sha1(toJava(text.checkstring())));
+            }
+        });
+        // 没有复制，按效果复制和按脚本复制没有区别
+        redis.set("replicate_commands", new ZeroArgFunction() {
+            @Override
+            public LuaValue call() {
+                return LuaValue.TRUE;
+            }
+        });
+        redis.set("log", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return LuaValue.NONE;
+            }
+        });
+        redis.set("LOG_DEBUG", 0);
+        redis.set("LOG_VERBOSE", 1);
+        redis.set("LOG_NOTICE", 2);
+        redis.set("LOG_WARNING", 3);
+        globals.set("redis", redis);
+    }
+
+    /**
+     * @description: 编译并缓存脚本
+     * @param source 脚本内容
+     * @return 脚本的SHA1
+     */
+    String load(String source) {
+        String sha = sha1(source);
+        if (!functions.containsKey(sha)) {
+            try {
+                byte[] bytes = source.getBytes(RespProtocol.CHARSET);
+                functions.put(sha, globals.load(new ByteArrayInputStream(bytes), "@user_script", "t", globals));
+            } catch (LuaError e) {
+                throw new EmbeddedRedisCommands.CommandException(
+                        "ERR Error compiling script (new function): " + e.getMessage());
+            }
+        }
+        return sha;
+    }
+
+    Object eval(EmbeddedRedisCommands.Session session, String source, List<String> keys, List<String> argv) {
+        return run(session, load(source), keys, argv);
+    }
+
+    Object evalSha(EmbeddedRedisCommands.Session session, String sha, List<String> keys, List<String> argv) {
+        if (!functions.containsKey(sha)) {
+            throw new EmbeddedRedisCommands.CommandException("NOSCRIPT No matching script. Please use EVAL.");
+        }
+        return run(session, sha, keys, argv);
+    }
+
+    boolean exists(String sha) {
+        return functions.containsKey(sha);
+    }
+
+    void flush() {
+        functions.clear();
+    }
+
+    private Object run(EmbeddedRedisCommands.Session session, String sha, List<String> keys, List<String> argv) {
+        globals.set("KEYS", toLua(keys));
+        globals.set("ARGV", toLua(argv));
+        current = session;
+        session.inScript = true;
+        try {
+            return toReply(functions.get(sha).call());
+        } catch (LuaError e) {
+            throw new EmbeddedRedisCommands.CommandException(
+                    "ERR Error running script (call to f_" + sha + "): " + e.getMessage());
+        } finally {
+            session.inScript = false;
+            current = null;
+        }
+    }
+
+    /**
+     * redis.call和redis.pcall：call遇到错误时中断脚本，pcall返回错误表
+     */
+    private LuaValue redisCall(Varargs args, boolean protect) {
+        if (args.narg() == 0) {
+            throw new LuaError("Please specify at least one argument for redis.call()");
+        }
+        List<String> command = new ArrayList<>(args.narg());
+        for (int i = 1; i <= args.narg(); i++) {
+            LuaValue arg = args.arg(i);
+            if (arg.type() == LuaValue.TNUMBER) {
+                command.add(EmbeddedRedisCommands.formatDouble(arg.todouble()));
+            } else if (arg.type() == LuaValue.TSTRING) {
+                command.add(toJava(arg.checkstring()));
+            } else {
+                throw new LuaError("Lua redis() command arguments must be strings or integers");
+            }
+        }
+        try {
+            return toLua(commands.call(current, command));
+        } catch (EmbeddedRedisCommands.CommandException e) {
+            if (protect) {
+                LuaTable error = new LuaTable();
+                error.set("err", toLua(e.getMessage()));
+                return error;
+            }
+            throw new LuaError(e.getMessage());
+        }
+    }
+
+    /**
+     * 命令回复转换为Lua值
+     */
+    private static LuaValue toLua(Object reply) {
+        if (reply == null || reply == RespProtocol.NULL_ARRAY) {
+            return LuaValue.FALSE;
+        } else if (reply instanceof String) {
+            return LuaString.valueOf(((String) reply).getBytes(RespProtocol.CHARSET));
+        } else if (reply instanceof Number) {
+            return LuaInteger.valueOf(((Number) reply).longValue());
+        } else if (reply instanceof RespProtocol.Status) {
+            LuaTable status = new LuaTable();
+            status.set("ok", toLua(((RespProtocol.Status) reply).text));
+            return status;
+        } else if (reply instanceof RespProtocol.Error) {
+            LuaTable error = new LuaTable();
+            error.set("err", toLua(((RespProtocol.Error) reply).message));
+            return error;
+        }
+        LuaTable table = new LuaTable();
+        int i = 1;
+        for (Object item : (Collection<?>) reply) {
+            table.set(i++, toLua(item));
+        }
+        return table;
+    }
+
+    /**
+     * Lua返回值转换为命令回复：数字截断为整数，表按数组返回直到第一个nil
+     */
+    private static Object toReply(LuaValue value) {
+        switch (value.type()) {
+            case LuaValue.TNUMBER:
+                return (long) value.todouble();
+            case LuaValue.TSTRING:
+                return toJava(value.checkstring());
+            case LuaValue.TBOOLEAN:
+                return value.toboolean() ? 1L : null;
+            case LuaValue.TTABLE:
+                LuaValue err = value.get("err");
+                if (err.isstring()) {
+                    return new RespProtocol.Error(toJava(err.checkstring()));
+                }
+                LuaValue ok = value.get("ok");
+                if (ok.isstring()) {
+                    return new RespProtocol.Status(toJava(ok.checkstring()));
+                }
+                List<Object> items = new ArrayList<>();
+                for (int i = 1; !value.get(i).isnil(); i++) {
+                    items.add(toReply(value.get(i)));
+                }
+                return items;
+            default:
+                return null;
+        }
+    }
+
+    private static String toJava(LuaString value) {
+        byte[] bytes = new byte[value.m_length];
+        value.copyInto(0, bytes, 0, bytes.length);
+        return new String(bytes, RespProtocol.CHARSET);
+    }
+
+    private static String sha1(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(source.getBytes(RespProtocol.CHARSET));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
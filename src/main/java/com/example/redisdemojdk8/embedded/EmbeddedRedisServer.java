@@ -0,0 +1,401 @@
+package com.example.redisdemojdk8.embedded;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @description: 进程内的Redis协议服务端
+ * <p>用于没有Redis的环境下做本地压测和联调，Jedis和Lettuce都可以直接连接。命令实现见
+ * {@link EmbeddedRedisCommands}，只保证项目用到的命令子集的行为与Redis一致，不支持持久化、事务、
+ * 集群和阻塞命令。每个连接一个线程，命令在全局锁内串行执行。</p>
+ * <p>可以注入固定延迟和随机抖动模拟网络往返：每一批请求（pipeline中连续到达的命令算一批）
+ * 的回复在发送前等待一次，压测结果可以稳定复现。</p>
+ * @author Kent HAN
+ * @date 2023/12/25 16:00
+ */
+@Slf4j
+public class EmbeddedRedisServer {
+
+    private final int requestedPort;
+
+    private final EmbeddedRedisCommands commands = new EmbeddedRedisCommands(this);
+
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, Set<Connection>> channels = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<Connection>> patterns = new ConcurrentHashMap<>();
+
+    private volatile long latencyMicros;
+
+    private volatile long jitterMicros;
+
+    private ServerSocket serverSocket;
+
+    private ExecutorService workers;
+
+    private ScheduledExecutorService expirer;
+
+    /**
+     * @param port 监听端口，0表示随机端口
+     */
+    public EmbeddedRedisServer(int port) {
+        this.requestedPort = port;
+    }
+
+    /**
+     * @description: 启动服务，只监听本机地址
+     */
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            return;
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), requestedPort));
+        AtomicInteger threadIndex = new AtomicInteger();
+        workers = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "embedded-redis-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        expirer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "embedded-redis-expire");
+            thread.setDaemon(true);
+            return thread;
+        });
+        expirer.scheduleWithFixedDelay(() -> {
+            synchronized (commands) {
+                commands.purgeExpired();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+        ServerSocket socket = serverSocket;
+        workers.execute(() -> accept(socket));
+        log.info("内嵌Redis已启动，端口：{}", getPort());
+    }
+
+    /**
+     * @description: 停止服务并断开所有连接，数据随之丢弃
+     */
+    public synchronized void stop() {
+        if (serverSocket == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            log.warn("关闭内嵌Redis监听端口失败", e);
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        workers.shutdownNow();
+        expirer.shutdownNow();
+        serverSocket = null;
+        log.info("内嵌Redis已停止");
+    }
+
+    /**
+     * @description: 实际监听的端口
+     * @return 端口，未启动时返回构造时指定的端口
+     */
+    public int getPort() {
+        ServerSocket socket = serverSocket;
+        return socket == null ? requestedPort : socket.getLocalPort();
+    }
+
+    /**
+     * @description: 设置注入的延迟，运行期间可以随时调整
+     * @param latencyMicros 每次往返的固定延迟（微秒）
+     * @param jitterMicros 在固定延迟上叠加的随机抖动上限（微秒）
+     */
+    public void setLatency(long latencyMicros, long jitterMicros) {
+        this.latencyMicros = Math.max(0, latencyMicros);
+        this.jitterMicros = Math.max(0, jitterMicros);
+    }
+
+    /**
+     * @description: 已执行的命令数，脚本内的redis.call也计入
+     * @return 命令数
+     */
+    public long getCommandCount() {
+        synchronized (commands) {
+            return commands.getCommandCount();
+        }
+    }
+
+    /**
+     * @description: 当前的客户端连接数
+     * @return 连接数
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * @description: 发布消息
+     * @return 收到消息的订阅数
+     */
+    long publish(String channel, String message) {
+        long receivers = 0;
+        for (Connection connection : channels.getOrDefault(channel, Collections.emptySet())) {
+            if (connection.push(Arrays.asList("message", channel, message))) {
+                receivers++;
+            }
+        }
+        for (Map.Entry<String, Set<Connection>> entry : patterns.entrySet()) {
+            if (EmbeddedRedisCommands.globMatch(entry.getKey(), channel)) {
+                for (Connection connection : entry.getValue()) {
+                    if (connection.push(Arrays.asList("pmessage", entry.getKey(), channel, message))) {
+                        receivers++;
+                    }
+                }
+            }
+        }
+        return receivers;
+    }
+
+    private void accept(ServerSocket socket) {
+        while (!socket.isClosed()) {
+            try {
+                Socket client = socket.accept();
+                client.setTcpNoDelay(true);
+                Connection connection = new Connection(client);
+                connections.add(connection);
+                workers.execute(connection);
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    log.warn("内嵌Redis接受连接失败", e);
+                }
+            } catch (RuntimeException e) {
+                // 停止过程中线程池拒绝新任务
+                if (!socket.isClosed()) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 按配置等待一次，模拟网络往返
+     */
+    private void delay() {
+        long micros = latencyMicros;
+        long jitter = jitterMicros;
+        if (jitter > 0) {
+            micros += ThreadLocalRandom.current().nextLong(jitter + 1);
+        }
+        if (micros <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MICROSECONDS.sleep(micros);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 单个客户端连接
+     */
+    private final class Connection implements Runnable {
+
+        private final Socket socket;
+
+        private final EmbeddedRedisCommands.Session session = new EmbeddedRedisCommands.Session();
+
+        private final Set<String> subscribedChannels = new LinkedHashSet<>();
+
+        private final Set<String> subscribedPatterns = new LinkedHashSet<>();
+
+        private OutputStream out;
+
+        private Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            try {
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                synchronized (this) {
+                    out = new BufferedOutputStream(socket.getOutputStream());
+                }
+                List<String> args;
+                while ((args = RespProtocol.readCommand(in)) != null) {
+                    if (args.isEmpty()) {
+                        continue;
+                    }
+                    boolean quit = handle(args);
+                    if (quit || in.available() == 0) {
+                        delay();
+                        synchronized (this) {
+                            out.flush();
+                        }
+                    }
+                    if (quit) {
+                        break;
+                    }
+                }
+            } catch (SocketException e) {
+                // 客户端断开
+            } catch (IOException e) {
+                log.debug("内嵌Redis连接异常：{}", e.getMessage());
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * @return 是否关闭连接
+         */
+        private boolean handle(List<String> args) throws IOException {
+            String name = args.get(0).toUpperCase(Locale.ROOT);
+            switch (name) {
+                case "HELLO":
+                    // 只支持RESP2，Lettuce收到该错误后回退到RESP2
+                    write(RespProtocol.error("unknown command 'HELLO'"));
+                    return false;
+                case "SUBSCRIBE":
+                    subscribe(args, channels, subscribedChannels, "subscribe");
+                    return false;
+                case "PSUBSCRIBE":
+                    subscribe(args, patterns, subscribedPatterns, "psubscribe");
+                    return false;
+                case "UNSUBSCRIBE":
+                    unsubscribe(args, channels, subscribedChannels, "unsubscribe");
+                    return false;
+                case "PUNSUBSCRIBE":
+                    unsubscribe(args, patterns, subscribedPatterns, "punsubscribe");
+                    return false;
+                case "PING":
+                    if (subscriptions() > 0) {
+                        write(Arrays.asList("pong", args.size() > 1 ? args.get(1) : ""));
+                        return false;
+                    }
+                    break;
+                case "QUIT":
+                    write(RespProtocol.OK);
+                    return true;
+                default:
+                    if (subscriptions() > 0) {
+                        write(RespProtocol.error("Can't execute '" + args.get(0).toLowerCase(Locale.ROOT)
+                                + "': only (P)SUBSCRIBE / (P)UNSUBSCRIBE / PING / QUIT are allowed in this context"));
+                        return false;
+                    }
+                    break;
+            }
+            Object reply;
+            synchronized (commands) {
+                reply = commands.execute(session, args);
+            }
+            write(reply);
+            return false;
+        }
+
+        private void subscribe(List<String> args, Map<String, Set<Connection>> registry, Set<String> own,
+                               String kind) throws IOException {
+            for (int i = 1; i < args.size(); i++) {
+                String name = args.get(i);
+                synchronized (this) {
+                    if (own.add(name)) {
+                        registry.computeIfAbsent(name, k -> ConcurrentHashMap.newKeySet()).add(this);
+                    }
+                    write(Arrays.asList(kind, name, (long) subscriptions()));
+                }
+            }
+        }
+
+        private void unsubscribe(List<String> args, Map<String, Set<Connection>> registry, Set<String> own,
+                                 String kind) throws IOException {
+            List<String> names = args.size() > 1 ? args.subList(1, args.size()) : new ArrayList<>(own);
+            if (names.isEmpty()) {
+                write(Arrays.asList(kind, null, (long) subscriptions()));
+                return;
+            }
+            for (String name : names) {
+                synchronized (this) {
+                    if (own.remove(name)) {
+                        Set<Connection> subscribers = registry.get(name);
+                        if (subscribers != null) {
+                            subscribers.remove(this);
+                        }
+                    }
+                    write(Arrays.asList(kind, name, (long) subscriptions()));
+                }
+            }
+        }
+
+        private int subscriptions() {
+            return subscribedChannels.size() + subscribedPatterns.size();
+        }
+
+        private synchronized void write(Object reply) throws IOException {
+            RespProtocol.writeReply(out, reply);
+        }
+
+        /**
+         * 推送订阅消息，立即发送
+         * @return 是否发送成功
+         */
+        private synchronized boolean push(List<String> message) {
+            if (out == null) {
+                return false;
+            }
+            try {
+                RespProtocol.writeReply(out, message);
+                out.flush();
+                return true;
+            } catch (IOException e) {
+                close();
+                return false;
+            }
+        }
+
+        private synchronized void close() {
+            connections.remove(this);
+            for (String channel : subscribedChannels) {
+                Set<Connection> subscribers = channels.get(channel);
+                if (subscribers != null) {
+                    subscribers.remove(this);
+                }
+            }
+            for (String pattern : subscribedPatterns) {
+                Set<Connection> subscribers = patterns.get(pattern);
+                if (subscribers != null) {
+                    subscribers.remove(this);
+                }
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
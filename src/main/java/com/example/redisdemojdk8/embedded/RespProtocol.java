@@ -0,0 +1,190 @@
+package com.example.redisdemojdk8.embedded;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @description: RESP2协议的读写
+ * <p>Key和值统一按ISO-8859-1转换为字符串，字节与字符一一对应，二进制数据不会损坏。
+ * 回复类型：Long为整数，String为bulk字符串，null为空bulk，Collection为数组，
+ * {@link Status}为状态回复，{@link Error}为错误回复。</p>
+ * @author Kent HAN
+ * @date 2023/12/25 9:30
+ */
+final class RespProtocol {
+
+    static final Charset CHARSET = StandardCharsets.ISO_8859_1;
+
+    static final Status OK = new Status("OK");
+
+    /**
+     * 空数组回复（*-1）
+     */
+    static final Object NULL_ARRAY = new Object();
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private static final int MAX_BULK_LENGTH = 512 * 1024 * 1024;
+
+    private RespProtocol() {
+    }
+
+    /**
+     * 状态回复
+     */
+    static final class Status {
+
+        final String text;
+
+        Status(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * 错误回复，message需要带错误前缀，例如 ERR、WRONGTYPE
+     */
+    static final class Error {
+
+        final String message;
+
+        Error(String message) {
+            this.message = message;
+        }
+    }
+
+    static Error error(String message) {
+        return new Error("ERR " + message);
+    }
+
+    /**
+     * @description: 读取一条命令，支持数组格式和inline格式
+     * @param in 输入流
+     * @return 命令和参数，连接关闭时返回null
+     */
+    static List<String> readCommand(InputStream in) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        if (first != '*') {
+            String line = readLine(in);
+            line = ((char) first + line).trim();
+            List<String> args = new ArrayList<>();
+            for (String part : line.split("\\s+")) {
+                if (!part.isEmpty()) {
+                    args.add(part);
+                }
+            }
+            return args;
+        }
+        int count = parseInt(readLine(in));
+        List<String> args = new ArrayList<>(Math.max(count, 0));
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Protocol error: expected '$'");
+            }
+            int length = parseInt(readLine(in));
+            if (length < 0 || length > MAX_BULK_LENGTH) {
+                throw new IOException("Protocol error: invalid bulk length " + length);
+            }
+            byte[] bytes = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int n = in.read(bytes, offset, length - offset);
+                if (n < 0) {
+                    throw new EOFException();
+                }
+                offset += n;
+            }
+            if (in.read() != '\r' || in.read() != '\n') {
+                throw new IOException("Protocol error: expected CRLF");
+            }
+            args.add(new String(bytes, CHARSET));
+        }
+        return args;
+    }
+
+    /**
+     * @description: 写入一条回复
+     * @param out 输出流
+     * @param reply 回复
+     */
+    static void writeReply(OutputStream out, Object reply) throws IOException {
+        if (reply == null) {
+            out.write('$');
+            out.write('-');
+            out.write('1');
+            out.write(CRLF);
+        } else if (reply == NULL_ARRAY) {
+            out.write('*');
+            out.write('-');
+            out.write('1');
+            out.write(CRLF);
+        } else if (reply instanceof String) {
+            String value = (String) reply;
+            out.write('$');
+            writeNumber(out, value.length());
+            out.write(value.getBytes(CHARSET));
+            out.write(CRLF);
+        } else if (reply instanceof Long || reply instanceof Integer) {
+            out.write(':');
+            writeNumber(out, ((Number) reply).longValue());
+        } else if (reply instanceof Status) {
+            out.write('+');
+            out.write(((Status) reply).text.getBytes(CHARSET));
+            out.write(CRLF);
+        } else if (reply instanceof Error) {
+            out.write('-');
+            out.write(((Error) reply).message.replace('\r', ' ').replace('\n', ' ').getBytes(CHARSET));
+            out.write(CRLF);
+        } else if (reply instanceof Collection) {
+            Collection<?> items = (Collection<?>) reply;
+            out.write('*');
+            writeNumber(out, items.size());
+            for (Object item : items) {
+                writeReply(out, item);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported reply type " + reply.getClass().getName());
+        }
+    }
+
+    private static void writeNumber(OutputStream out, long value) throws IOException {
+        out.write(Long.toString(value).getBytes(CHARSET));
+        out.write(CRLF);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\r') {
+            if (c < 0) {
+                throw new EOFException();
+            }
+            if (c == '\n') {
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        if (in.read() != '\n') {
+            throw new IOException("Protocol error: expected LF");
+        }
+        return line.toString();
+    }
+
+    private static int parseInt(String text) throws IOException {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IOException("Protocol error: invalid length " + text);
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package com.example.redisdemojdk8.loadtest;
+
+import com.example.redisdemojdk8.service.LuaDemo;
+import com.example.redisdemojdk8.util.RedisUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @description: Redis压测工具
+ * <p>loadtest.enabled=true 时在应用启动后运行：按配置的线程数、操作比例、Key分布和值大小持续发起请求，
+ * 预热结束后开始统计，定期输出区间吞吐量，结束时输出各操作的吞吐量和HdrHistogram延迟分位数。
+ * 连接的Redis由spring.redis配置决定，配合 embedded profile 可以压测内嵌Redis。</p>
+ * <p>client=utils 通过RedisUtils（RedisTemplate + Lettuce + 序列化）访问，
+ * client=jedis 直接从JedisPool借连接访问，用于对比客户端和连接池配置的上限。
+ * 两种方式发送相同的命令：SET带PX过期时间，hset、push、incr执行RedisUtils使用的同一个Lua脚本并设置过期时间，
+ * 区别只在客户端、连接池和值的序列化。</p>
+ * <pre>
+ * java -jar redis-demo-jdk8.jar --loadtest.enabled=true --loadtest.threads=64 --loadtest.mix=get:80,set:20
+ * </pre>
+ * @author Kent HAN
+ * @date 2023/12/26 10:00
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "loadtest", name = "enabled", havingValue = "true")
+public class RedisLoadGenerator implements CommandLineRunner {
+
+    /**
+     * 最多打印的错误日志条数
+     */
+    private static final int MAX_LOGGED_ERRORS = 10;
+
+    /**
+     * 每个线程预先生成的值的数量
+     */
+    private static final int VALUES_PER_THREAD = 8;
+
+    private static final int PRELOAD_BATCH_SIZE = 1000;
+
+    @Resource
+    private RedisUtils redisUtils;
+
+    @Resource
+    private JedisPool jedisPool;
+
+    @Resource
+    private LuaDemo luaDemo;
+
+    @Resource
+    private ApplicationContext applicationContext;
+
+    /**
+     * 访问方式：utils 或 jedis
+     */
+    @Value("${loadtest.client:utils}")
+    private String client;
+
+    @Value("${loadtest.threads:32}")
+    private int threads;
+
+    @Value("${loadtest.warmup-seconds:10}")
+    private int warmupSeconds;
+
+    @Value("${loadtest.duration-seconds:60}")
+    private int durationSeconds;
+
+    @Value("${loadtest.report-interval-seconds:5}")
+    private int reportIntervalSeconds;
+
+    /**
+     * 操作比例，操作名:权重，逗号分隔，可选操作见 {@link Operation}
+     */
+    @Value("${loadtest.mix:get:60,set:20,hget:5,hset:5,push:4,pop:4,incr:2}")
+    private String mix;
+
+    @Value("${loadtest.key-prefix:utcsystem_loadtest:}")
+    private String keyPrefix;
+
+    @Value("${loadtest.key-space:100000}")
+    private int keySpace;
+
+    /**
+     * Key分布：uniform 或 zipfian
+     */
+    @Value("${loadtest.distribution:zipfian}")
+    private String distribution;
+
+    @Value("${loadtest.zipf-theta:0.99}")
+    private double zipfTheta;
+
+    /**
+     * 写入的值的字节数
+     */
+    @Value("${loadtest.value-size:256}")
+    private int valueSize;
+
+    @Value("${loadtest.hash-fields:16}")
+    private int hashFields;
+
+    @Value("${loadtest.ttl-seconds:600}")
+    private int ttlSeconds;
+
+    /**
+     * 开始前写入全部字符串Key，使get全部命中
+     */
+    @Value("${loadtest.preload:true}")
+    private boolean preload;
+
+    /**
+     * 结束后删除压测产生的Key
+     */
+    @Value("${loadtest.cleanup:true}")
+    private boolean cleanup;
+
+    @Value("${loadtest.exit-on-finish:true}")
+    private boolean exitOnFinish;
+
+    /**
+     * 压测操作
+     */
+    enum Operation {
+        GET, SET, HGET, HSET, PUSH, POP, INCR
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        Operation[] operations = parseMix();
+        KeyChooser keys = "uniform".equalsIgnoreCase(distribution)
+                ? random -> random.nextInt(keySpace)
+                : new ZipfianGenerator(keySpace, zipfTheta)::next;
+        Target target = "jedis".equalsIgnoreCase(client) ? new JedisTarget() : new RedisUtilsTarget();
+        log.info("压测开始 client={} threads={} mix={} distribution={} keySpace={} valueSize={} warmup={}s duration={}s",
+                client, threads, mix, distribution, keySpace, valueSize, warmupSeconds, durationSeconds);
+        if (preload) {
+            long start = System.nanoTime();
+            target.preload();
+            log.info("预写入{}个Key，耗时{}ms", keySpace, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        Statistics statistics = new Statistics();
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        long startNanos = System.nanoTime();
+        long measureNanos = startNanos + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long endNanos = measureNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+        try {
+            reporter.schedule(statistics::startMeasuring, warmupSeconds, TimeUnit.SECONDS);
+            reporter.scheduleAtFixedRate(statistics::report,
+                    reportIntervalSeconds, reportIntervalSeconds, TimeUnit.SECONDS);
+            for (int i = 0; i < threads; i++) {
+                workers.execute(() -> work(target, operations, keys, statistics, endNanos));
+            }
+            workers.shutdown();
+            workers.awaitTermination(warmupSeconds + durationSeconds + 60L, TimeUnit.SECONDS);
+        } finally {
+            workers.shutdownNow();
+            reporter.shutdownNow();
+        }
+        statistics.drain();
+        statistics.print(Math.max(1, System.nanoTime() - Math.max(measureNanos, startNanos)));
+        if (cleanup) {
+            log.info("清理压测Key：{}个", redisUtils.purgeNamespace(keyPrefix));
+        }
+        if (exitOnFinish) {
+            System.exit(SpringApplication.exit(applicationContext));
+        }
+    }
+
+    private void work(Target target, Operation[] operations, KeyChooser keys, Statistics statistics, long endNanos) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String[] values = new String[VALUES_PER_THREAD];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = randomValue(random);
+        }
+        while (System.nanoTime() < endNanos) {
+            Operation operation = operations[random.nextInt(operations.length)];
+            long key = keys.next(random);
+            String value = values[random.nextInt(values.length)];
+            long start = System.nanoTime();
+            try {
+                target.execute(operation, key, "f" + random.nextInt(hashFields), value);
+                statistics.record(operation, System.nanoTime() - start);
+            } catch (RuntimeException e) {
+                statistics.error(operation, e);
+            }
+        }
+    }
+
+    /**
+     * 把比例展开为长度为权重之和的数组，按随机下标选择操作
+     */
+    private Operation[] parseMix() {
+        List<Operation> operations = new ArrayList<>();
+        for (String item : mix.split(",")) {
+            String[] parts = item.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid loadtest.mix item: " + item);
+            }
+            Operation operation = Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+            for (int i = Integer.parseInt(parts[1].trim()); i > 0; i--) {
+                operations.add(operation);
+            }
+        }
+        if (operations.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix has no operation");
+        }
+        return operations.toArray(new Operation[0]);
+    }
+
+    private String randomValue(ThreadLocalRandom random) {
+        char[] chars = new char[valueSize];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    private String stringKey(long key) {
+        return keyPrefix + "s:" + key;
+    }
+
+    private String hashKey(long key) {
+        return keyPrefix + "h:" + key;
+    }
+
+    private String listKey(long key) {
+        return keyPrefix + "l:" + key;
+    }
+
+    private String counterKey(long key) {
+        return keyPrefix + "c:" + key;
+    }
+
+    @FunctionalInterface
+    private interface KeyChooser {
+
+        long next(ThreadLocalRandom random);
+    }
+
+    private interface Target {
+
+        void execute(Operation operation, long key, String field, String value);
+
+        void preload();
+    }
+
+    /**
+     * 通过RedisUtils访问
+     */
+    private final class RedisUtilsTarget implements Target {
+
+        @Override
+        public void execute(Operation operation, long key, String field, String value) {
+            switch (operation) {
+                case GET:
+                    redisUtils.get(stringKey(key));
+                    break;
+                case SET:
+                    redisUtils.setAndExpire(stringKey(key), value, ttlSeconds);
+                    break;
+                case HGET:
+                    redisUtils.getHash(hashKey(key), field);
+                    break;
+                case HSET:
+                    redisUtils.setHashAndExpire(hashKey(key), field, value, ttlSeconds);
+                    break;
+                case PUSH:
+                    redisUtils.tailPushAndExpire(listKey(key), value, ttlSeconds);
+                    break;
+                case POP:
+                    redisUtils.headPop(listKey(key));
+                    break;
+                default:
+                    redisUtils.incrAndExpireAt(counterKey(key), 1,
+                            System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttlSeconds));
+                    break;
+            }
+        }
+
+        @Override
+        public void preload() {
+            String value = randomValue(ThreadLocalRandom.current());
+            Map<String, Object> batch = new HashMap<>();
+            for (long key = 0; key < keySpace; key++) {
+                batch.put(stringKey(key), value);
+                if (batch.size() >= PRELOAD_BATCH_SIZE || key == keySpace - 1) {
+                    redisUtils.multiSetAndExpire(batch, ttlSeconds, 0, PRELOAD_BATCH_SIZE);
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * 直接通过JedisPool访问，值不经过序列化
+     * <p>与RedisUtils一样通过 {@link LuaDemo} 执行脚本</p>
+     */
+    private final class JedisTarget implements Target {
+
+        @Override
+        public void execute(Operation operation, long key, String field, String value) {
+            String ttlMillis = Long.toString(TimeUnit.SECONDS.toMillis(ttlSeconds));
+            try (Jedis jedis = jedisPool.getResource()) {
+                switch (operation) {
+                    case GET:
+                        jedis.get(stringKey(key));
+                        break;
+                    case SET:
+                        jedis.psetex(stringKey(key), TimeUnit.SECONDS.toMillis(ttlSeconds), value);
+                        break;
+                    case HGET:
+                        jedis.hget(hashKey(key), field);
+                        break;
+                    case HSET:
+                        execute(jedis, "hash_put_expire", hashKey(key), ttlMillis, field, value);
+                        break;
+                    case PUSH:
+                        execute(jedis, "list_push_expire", listKey(key), ttlMillis, "R", value);
+                        break;
+                    case POP:
+                        jedis.lpop(listKey(key));
+                        break;
+                    default:
+                        execute(jedis, "incr_expire", counterKey(key), "1",
+                                Long.toString(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttlSeconds)));
+                        break;
+                }
+            }
+        }
+
+        private void execute(Jedis jedis, String script, String key, String... args) {
+            luaDemo.execute(jedis, script, null, Collections.singletonList(key), args);
+        }
+
+        @Override
+        public void preload() {
+            String value = randomValue(ThreadLocalRandom.current());
+            try (Jedis jedis = jedisPool.getResource()) {
+                Pipeline pipeline = jedis.pipelined();
+                for (long key = 0; key < keySpace; key++) {
+                    pipeline.psetex(stringKey(key), TimeUnit.SECONDS.toMillis(ttlSeconds), value);
+                    if ((key + 1) % PRELOAD_BATCH_SIZE == 0) {
+                        pipeline.sync();
+                    }
+                }
+                pipeline.sync();
+            }
+        }
+    }
+
+    /**
+     * 各操作的延迟和错误统计
+     * <p>工作线程写入Recorder，统计线程定期取出区间直方图；预热期间的数据丢弃，之后累加到汇总直方图</p>
+     */
+    private static final class Statistics {
+
+        private final Recorder[] recorders = new Recorder[Operation.values().length];
+
+        private final Histogram[] totals = new Histogram[Operation.values().length];
+
+        private final LongAdder[] errors = new LongAdder[Operation.values().length];
+
+        private final AtomicInteger loggedErrors = new AtomicInteger();
+
+        private volatile boolean measuring;
+
+        private Statistics() {
+            for (int i = 0; i < recorders.length; i++) {
+                recorders[i] = new Recorder(3);
+                totals[i] = new Histogram(3);
+                errors[i] = new LongAdder();
+            }
+        }
+
+        private void record(Operation operation, long nanos) {
+            recorders[operation.ordinal()].recordValue(nanos);
+        }
+
+        private void error(Operation operation, RuntimeException e) {
+            if (measuring) {
+                errors[operation.ordinal()].increment();
+            }
+            if (loggedErrors.incrementAndGet() <= MAX_LOGGED_ERRORS) {
+                log.warn("压测请求失败：{}", operation, e);
+            }
+        }
+
+        /**
+         * 预热结束，丢弃之前的数据
+         */
+        private synchronized void startMeasuring() {
+            for (Recorder recorder : recorders) {
+                recorder.reset();
+            }
+            measuring = true;
+            log.info("预热结束，开始统计");
+        }
+
+        /**
+         * 输出区间吞吐量和p99
+         */
+        private synchronized void report() {
+            long count = 0;
+            long p99 = 0;
+            long seconds = 0;
+            for (int i = 0; i < recorders.length; i++) {
+                Histogram interval = recorders[i].getIntervalHistogram();
+                if (measuring) {
+                    totals[i].add(interval);
+                }
+                count += interval.getTotalCount();
+                p99 = Math.max(p99, interval.getValueAtPercentile(99));
+                if (interval.getTotalCount() > 0) {
+                    seconds = Math.max(seconds, interval.getEndTimeStamp() - interval.getStartTimeStamp());
+                }
+            }
+            log.info("{} 区间吞吐量 {} ops/s，最大p99 {}us", measuring ? "统计中" : "预热中",
+                    seconds == 0 ? 0 : count * 1000 / seconds, TimeUnit.NANOSECONDS.toMicros(p99));
+        }
+
+        private synchronized void drain() {
+            for (int i = 0; i < recorders.length; i++) {
+                Histogram interval = recorders[i].getIntervalHistogram();
+                if (measuring) {
+                    totals[i].add(interval);
+                }
+            }
+        }
+
+        private void print(long elapsedNanos) {
+            double seconds = elapsedNanos / 1e9;
+            Histogram all = new Histogram(3);
+            StringBuilder report = new StringBuilder(String.format("%n%-6s %12s %12s %10s %10s %10s %10s %10s %8s%n",
+                    "op", "count", "ops/s", "p50(us)", "p90(us)", "p99(us)", "p999(us)", "max(us)", "errors"));
+            for (Operation operation : Operation.values()) {
+                Histogram histogram = totals[operation.ordinal()];
+                long errorCount = errors[operation.ordinal()].sum();
+                if (histogram.getTotalCount() == 0 && errorCount == 0) {
+                    continue;
+                }
+                all.add(histogram);
+                appendLine(report, operation.name().toLowerCase(Locale.ROOT), histogram, seconds, errorCount);
+            }
+            long errorCount = 0;
+            for (LongAdder error : errors) {
+                errorCount += error.sum();
+            }
+            appendLine(report, "total", all, seconds, errorCount);
+            log.info("压测结果（统计{}秒）：{}", String.format("%.1f", seconds), report);
+        }
+
+        private static void appendLine(StringBuilder report, String name, Histogram histogram, double seconds,
+                                       long errors) {
+            report.append(String.format("%-6s %12d %12.0f %10d %10d %10d %10d %10d %8d%n", name,
+                    histogram.getTotalCount(), histogram.getTotalCount() / seconds,
+                    micros(histogram.getValueAtPercentile(50)), micros(histogram.getValueAtPercentile(90)),
+                    micros(histogram.getValueAtPercentile(99)), micros(histogram.getValueAtPercentile(99.9)),
+                    micros(histogram.getMaxValue()), errors));
+        }
+
+        private static long micros(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.redisdemojdk8.loadtest;
+
+import java.util.Random;
+
+/**
+ * @description: Zipfian分布的随机数生成器
+ * <p>采用Gray等人的快速算法（YCSB同款），构造时预先计算zeta(n)，之后每次生成为O(1)。
+ * 返回值在[0, items)之间，越小的值出现越频繁，0是最热的元素。</p>
+ * @author Kent HAN
+ * @date 2023/12/26 9:30
+ */
+public class ZipfianGenerator {
+
+    private final long items;
+
+    private final double theta;
+
+    private final double zetan;
+
+    private final double alpha;
+
+    private final double eta;
+
+    /**
+     * @param items 元素数量
+     * @param theta 偏斜程度，取值(0, 1)，越大越集中，YCSB默认0.99
+     */
+    public ZipfianGenerator(long items, double theta) {
+        if (items < 1 || theta <= 0 || theta >= 1) {
+            throw new IllegalArgumentException("items must be positive and theta must be in (0, 1)");
+        }
+        this.items = items;
+        this.theta = theta;
+        this.zetan = zeta(items, theta);
+        this.alpha = 1.0 / (1.0 - theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+    }
+
+    /**
+     * @description: 生成下一个值
+     * @param random 随机数源，多线程时传入ThreadLocalRandom
+     * @return [0, items)之间的值
+     */
+    public long next(Random random) {
+        double u = random.nextDouble();
+        double uz = u * zetan;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < 1.0 + Math.pow(0.5, theta)) {
+            return Math.min(1, items - 1);
+        }
+        long value = (long) (items * Math.pow(eta * u - eta + 1, alpha));
+        return Math.min(value, items - 1);
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
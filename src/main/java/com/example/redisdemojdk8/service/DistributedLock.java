@@ -1,14 +1,488 @@
 package com.example.redisdemojdk8.service;
 
+import com.example.redisdemojdk8.constant.Constant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
+ * 基于租约的Redis分布式锁
+ * <p>加锁是一条 SET key token NX PX lease，令牌在每次加锁时生成；解锁和续期通过脚本比较令牌，
+ * 只有持有者能操作，锁过期后被他人获得时不会误删。持有期间看门狗每隔租期的1/3续期一次，
+ * 进程宕机后锁在一个租期内自动释放。所有命令通过JedisPool执行。锁不可重入。</p>
+ * <p>等待锁时不轮询：加锁脚本失败时返回锁的剩余租期，等待者最多阻塞这么久；
+ * 解锁脚本删除Key后发布释放通知（见 {@link LockReleaseNotifier}），等待者收到后立即重试。</p>
+ * <p>同一进程内的竞争者先在本地按锁排队（公平信号量），只有队首去Redis竞争。持有者释放时如果本地还有人排队，
+ * Redis中的锁不删除，连同令牌和看门狗直接交给下一个本地等待者；连续交接 redis.lock.max-local-handoffs
+ * 次后必须真正释放一次，让其他进程有机会获得锁。只有自动续期的锁会交接。</p>
+ * <pre>
+ * try (DistributedLock.Lease lease = distributedLock.tryLock("intersection:1001", 3000)) {
+ *     if (lease != null) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
  * @author Kent HAN
  * @date 2023/12/12 11:41
  */
+@Slf4j
 @Service
 public class DistributedLock {
-    public void distributedLockMethod() {
 
+    /**
+     * 锁的Key前缀
+     */
+    public static final String LOCK_KEY_PREFIX = Constant.KEY_PREFIX + "lock:";
+
+    /**
+     * 加锁脚本，失败时返回锁的剩余租期
+     */
+    private static final String ACQUIRE_SCRIPT = "lock_acquire";
+
+    /**
+     * 只有持有者可以释放锁并发布通知的脚本
+     */
+    private static final String RELEASE_SCRIPT = "lock_release";
+
+    /**
+     * 只有持有者可以续期锁的脚本
+     */
+    private static final String RENEW_SCRIPT = "lock_renew";
+
+    @Resource
+    private JedisPool jedisPool;
+
+    @Resource
+    private LuaDemo luaDemo;
+
+    @Resource
+    private LockReleaseNotifier lockReleaseNotifier;
+
+    /**
+     * 默认租期（毫秒）
+     */
+    @Value("${redis.lock.lease-millis:30000}")
+    private long defaultLeaseMillis;
+
+    /**
+     * 本地连续交接的最大次数，达到后在Redis中释放一次，0表示不交接
+     */
+    @Value("${redis.lock.max-local-handoffs:16}")
+    private int maxLocalHandoffs;
+
+    /**
+     * 令牌前缀，区分进程
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 锁的Key到本地排队情况的映射
+     */
+    private final ConcurrentHashMap<String, LocalQueue> queues = new ConcurrentHashMap<>();
+
+    private final LongAdder remoteAcquireCount = new LongAdder();
+
+    private final LongAdder localHandoffCount = new LongAdder();
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "redis-lock-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @description: 尝试加锁一次，不等待，使用默认租期
+     * @param name 锁名称
+     * @return 租约，锁被他人持有时返回null
+     */
+    public Lease tryLock(String name) {
+        try {
+            return tryLock(name, 0, defaultLeaseMillis, true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * @description: 在等待时间内尝试加锁，使用默认租期
+     * @param name 锁名称
+     * @param waitMillis 最长等待时间（毫秒），0表示只尝试一次
+     * @return 租约，超时未获得时返回null
+     */
+    public Lease tryLock(String name, long waitMillis) throws InterruptedException {
+        return tryLock(name, waitMillis, defaultLeaseMillis, true);
+    }
+
+    /**
+     * @description: 在等待时间内尝试加锁
+     * @param name 锁名称
+     * @param waitMillis 最长等待时间（毫秒），0表示只尝试一次
+     * @param leaseMillis 租期（毫秒）
+     * @param renew 是否由看门狗自动续期，不续期时锁在租期结束后自动释放
+     * @return 租约，超时未获得时返回null
+     */
+    public Lease tryLock(String name, long waitMillis, long leaseMillis, boolean renew) throws InterruptedException {
+        if (leaseMillis <= 0) {
+            throw new IllegalArgumentException("leaseMillis must be positive");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, waitMillis));
+        String key = LOCK_KEY_PREFIX + name;
+        // 先登记再竞争，避免错过竞争期间的释放通知
+        LocalQueue queue = queues.compute(key, (k, q) -> q == null ? new LocalQueue() : q.join());
+        boolean permitted = false;
+        Lease lease = null;
+        try {
+            if (!queue.permit.tryAcquire(remainingMillis(deadline), TimeUnit.MILLISECONDS)) {
+                return null;
+            }
+            permitted = true;
+            Grant grant = queue.takeHandoff();
+            if (grant != null && grant.lost) {
+                grant.stopRenewal();
+                grant = null;
+            }
+            if (grant == null) {
+                grant = acquireRemote(key, deadline, leaseMillis, renew);
+            }
+            if (grant != null) {
+                lease = new Lease(name, grant, queue);
+                leases.add(lease);
+            }
+            return lease;
+        } finally {
+            // 获得锁时在unlock中离开队列
+            if (lease == null) {
+                if (permitted) {
+                    queue.permit.release();
+                }
+                leave(key, queue);
+            }
+        }
+    }
+
+    /**
+     * @description: 加锁后执行，执行完成后释放锁
+     * @param name 锁名称
+     * @param waitMillis 最长等待时间（毫秒）
+     * @param action 持有锁期间执行的操作
+     * @return 操作的返回值
+     * @throws IllegalStateException 等待超时未获得锁
+     */
+    public <T> T executeWithLock(String name, long waitMillis, Supplier<T> action) throws InterruptedException {
+        try (Lease lease = tryLock(name, waitMillis)) {
+            if (lease == null) {
+                throw new IllegalStateException("Timed out waiting for lock: " + name);
+            }
+            return action.get();
+        }
+    }
+
+    /**
+     * @description: 释放锁；本地有人排队且未超过交接次数时直接交给下一个本地等待者，否则在Redis中释放
+     * @param lease 加锁时返回的租约
+     * @return 是否由本租约释放；锁已过期或被他人持有时返回false
+     */
+    public boolean unlock(Lease lease) {
+        if (!lease.markReleased()) {
+            return false;
+        }
+        leases.remove(lease);
+        Grant grant = lease.grant;
+        LocalQueue queue = lease.queue;
+        boolean released = !grant.lost;
+        try {
+            if (grant.renewal != null && !grant.lost && grant.handoffs < maxLocalHandoffs
+                    && queue.permit.hasQueuedThreads()) {
+                grant.handoffs++;
+                queue.handoff = grant;
+                localHandoffCount.increment();
+            } else {
+                released = releaseRemote(grant);
+            }
+        } finally {
+            queue.permit.release();
+            leave(grant.key, queue);
+        }
+        return released;
+    }
+
+    /**
+     * @description: 锁当前是否被任何人持有
+     * @param name 锁名称
+     * @return 是否被持有
+     */
+    public boolean isLocked(String name) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.exists(LOCK_KEY_PREFIX + name);
+        }
+    }
+
+    /**
+     * @description: 在Redis中加锁成功的次数
+     * @return 次数
+     */
+    public long getRemoteAcquireCount() {
+        return remoteAcquireCount.sum();
+    }
+
+    /**
+     * @description: 未经Redis直接在本地交接的次数
+     * @return 次数
+     */
+    public long getLocalHandoffCount() {
+        return localHandoffCount.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Lease lease : leases) {
+            unlock(lease);
+        }
+        for (LocalQueue queue : queues.values()) {
+            Grant grant = queue.takeHandoff();
+            if (grant != null) {
+                releaseRemote(grant);
+            }
+        }
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * 队首在Redis中竞争，失败时等待释放通知，最多等到锁的剩余租期
+     */
+    private Grant acquireRemote(String key, long deadline, long leaseMillis, boolean renew)
+            throws InterruptedException {
+        try (LockReleaseNotifier.Waiter waiter = lockReleaseNotifier.register(key)) {
+            for (;;) {
+                String token = nextToken();
+                Long ttl;
+                try (Jedis jedis = jedisPool.getResource()) {
+                    ttl = evalScript(jedis, ACQUIRE_SCRIPT, key, token, Long.toString(leaseMillis));
+                }
+                if (ttl == null) {
+                    remoteAcquireCount.increment();
+                    return newGrant(key, token, leaseMillis, renew);
+                }
+                long remaining = remainingMillis(deadline);
+                if (remaining <= 0) {
+                    return null;
+                }
+                waiter.await(ttl, remaining);
+            }
+        }
+    }
+
+    private boolean releaseRemote(Grant grant) {
+        grant.stopRenewal();
+        if (grant.lost) {
+            return false;
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            return evalScript(jedis, RELEASE_SCRIPT, grant.key, grant.token,
+                    LockReleaseNotifier.RELEASE_CHANNEL) > 0;
+        }
+    }
+
+    /**
+     * 离开本地队列；最后一个离开时如果还有未被接手的交接，在Redis中释放
+     */
+    private void leave(String key, LocalQueue queue) {
+        Grant[] orphan = new Grant[1];
+        queues.computeIfPresent(key, (k, q) -> {
+            if (q != queue || --q.count > 0) {
+                return q;
+            }
+            orphan[0] = q.takeHandoff();
+            return null;
+        });
+        if (orphan[0] != null) {
+            releaseRemote(orphan[0]);
+        }
+    }
+
+    private static long remainingMillis(long deadline) {
+        return TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+
+    private String nextToken() {
+        return instanceId + ":" + sequence.incrementAndGet();
+    }
+
+    private Grant newGrant(String key, String token, long leaseMillis, boolean renew) {
+        Grant grant = new Grant(key, token, leaseMillis);
+        if (renew) {
+            long period = Math.max(1, leaseMillis / 3);
+            synchronized (grant) {
+                grant.renewal = watchdog.scheduleWithFixedDelay(() -> renew(grant), period, period,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+        return grant;
+    }
+
+    /**
+     * 看门狗续期；令牌不匹配说明锁已过期并被他人获得，停止续期
+     */
+    private void renew(Grant grant) {
+        if (grant.stopped) {
+            return;
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            if (evalScript(jedis, RENEW_SCRIPT, grant.key, grant.token, Long.toString(grant.leaseMillis)) == 0L) {
+                log.warn("锁{}已失效，停止续期", grant.key);
+                grant.lost = true;
+                grant.stopRenewal();
+            }
+        } catch (RuntimeException e) {
+            // 下次重试，连续失败超过租期时锁会过期
+            log.warn("锁{}续期失败：{}", grant.key, e.getMessage());
+        }
+    }
+
+    private Long evalScript(Jedis jedis, String script, String key, String... args) {
+        return luaDemo.execute(jedis, script, Long.class, Collections.singletonList(key), args);
+    }
+
+    /**
+     * 同一个锁在本进程内的排队情况
+     */
+    private static final class LocalQueue {
+
+        /**
+         * 本地排队，公平信号量按到达顺序放行，不绑定线程，持有者可以在其他线程释放
+         */
+        private final Semaphore permit = new Semaphore(1, true);
+
+        /**
+         * 登记的线程数，包括持有者，受ConcurrentHashMap的compute保护
+         */
+        private int count = 1;
+
+        /**
+         * 上一个持有者交接出来、尚未被接手的Redis锁
+         */
+        private volatile Grant handoff;
+
+        private LocalQueue join() {
+            count++;
+            return this;
+        }
+
+        private Grant takeHandoff() {
+            Grant grant = handoff;
+            handoff = null;
+            return grant;
+        }
+    }
+
+    /**
+     * Redis中的一次加锁，本地交接时在多个租约之间传递
+     */
+    private static final class Grant {
+
+        private final String key;
+
+        private final String token;
+
+        private final long leaseMillis;
+
+        private volatile ScheduledFuture<?> renewal;
+
+        private volatile boolean stopped;
+
+        private volatile boolean lost;
+
+        /**
+         * 自上次在Redis中加锁以来的本地交接次数，只由持有者修改
+         */
+        private int handoffs;
+
+        private Grant(String key, String token, long leaseMillis) {
+            this.key = key;
+            this.token = token;
+            this.leaseMillis = leaseMillis;
+        }
+
+        private synchronized void stopRenewal() {
+            stopped = true;
+            if (renewal != null) {
+                renewal.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * 一次加锁的租约，关闭时释放锁
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final String name;
+
+        private final Grant grant;
+
+        private final LocalQueue queue;
+
+        private volatile boolean released;
+
+        private Lease(String name, Grant grant, LocalQueue queue) {
+            this.name = name;
+            this.grant = grant;
+            this.queue = queue;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getToken() {
+            return grant.token;
+        }
+
+        /**
+         * @description: 看门狗续期时是否发现锁已被他人获得
+         * @return 是否已丢失
+         */
+        public boolean isLost() {
+            return grant.lost;
+        }
+
+        @Override
+        public void close() {
+            unlock(this);
+        }
+
+        /**
+         * @return 是否是第一次释放
+         */
+        private synchronized boolean markReleased() {
+            if (released) {
+                return false;
+            }
+            released = true;
+            return true;
+        }
     }
 }
@@ -0,0 +1,325 @@
+package com.example.redisdemojdk8.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 基于租约的Redis读写锁，用于读多写少的资源，例如路口方案
+ * <p>每个锁一个hash：writer字段是写锁持有者的令牌，r:令牌 字段是各读者的过期时间点，hash的过期时间不短于所有持有者的租期。
+ * 读者之间共享，读者宕机后其字段在过期时间点之后被下一次加锁脚本清理。写者等待读者时登记写意向Key，
+ * 意向存在期间新的读者不能加锁，写者不会被源源不断的读者饿死。</p>
+ * <p>加锁、续期和释放都是脚本，续期由看门狗按租期的1/3执行；等待时通过 {@link LockReleaseNotifier} 接收释放通知，
+ * 写锁释放时唤醒所有等待的读者。读者过期时间按Redis服务器的TIME计算，不受各节点时钟偏差影响。锁不可重入，也不支持升降级。</p>
+ * <pre>
+ * try (DistributedReadWriteLock.Lease lease = readWriteLock.tryReadLock("plan:1001", 3000)) {
+ *     if (lease != null) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * @author Kent HAN
+ * @date 2023/12/27 11:00
+ */
+@Slf4j
+@Service
+public class DistributedReadWriteLock {
+
+    /**
+     * 读写锁的Key前缀
+     */
+    public static final String RW_LOCK_KEY_PREFIX = DistributedLock.LOCK_KEY_PREFIX + "rw:";
+
+    private static final String INTENT_SUFFIX = ":intent";
+
+    private static final String READ = "read";
+
+    private static final String WRITE = "write";
+
+    private static final String INTENT = "intent";
+
+    private static final String READ_ACQUIRE_SCRIPT = "rw_read_acquire";
+
+    private static final String WRITE_ACQUIRE_SCRIPT = "rw_write_acquire";
+
+    private static final String RELEASE_SCRIPT = "rw_release";
+
+    private static final String RENEW_SCRIPT = "rw_renew";
+
+    @Resource
+    private JedisPool jedisPool;
+
+    @Resource
+    private LuaDemo luaDemo;
+
+    @Resource
+    private LockReleaseNotifier lockReleaseNotifier;
+
+    /**
+     * 默认租期（毫秒）
+     */
+    @Value("${redis.lock.lease-millis:30000}")
+    private long defaultLeaseMillis;
+
+    /**
+     * 令牌前缀，区分进程
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "redis-rwlock-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @description: 在等待时间内尝试加读锁，使用默认租期并自动续期
+     * @param name 锁名称
+     * @param waitMillis 最长等待时间（毫秒），0表示只尝试一次
+     * @return 租约，超时未获得时返回null
+     */
+    public Lease tryReadLock(String name, long waitMillis) throws InterruptedException {
+        return tryLock(name, READ, waitMillis, defaultLeaseMillis, true);
+    }
+
+    /**
+     * @description: 在等待时间内尝试加写锁，使用默认租期并自动续期
+     * @param name 锁名称
+     * @param waitMillis 最长等待时间（毫秒），0表示只尝试一次
+     * @return 租约，超时未获得时返回null
+     */
+    public Lease tryWriteLock(String name, long waitMillis) throws InterruptedException {
+        return tryLock(name, WRITE, waitMillis, defaultLeaseMillis, true);
+    }
+
+    /**
+     * @description: 在等待时间内尝试加锁
+     * @param name 锁名称
+     * @param write 是否是写锁
+     * @param waitMillis 最长等待时间（毫秒），0表示只尝试一次
+     * @param leaseMillis 租期（毫秒）
+     * @param renew 是否由看门狗自动续期
+     * @return 租约，超时未获得时返回null
+     */
+    public Lease tryLock(String name, boolean write, long waitMillis, long leaseMillis, boolean renew)
+            throws InterruptedException {
+        return tryLock(name, write ? WRITE : READ, waitMillis, leaseMillis, renew);
+    }
+
+    /**
+     * @description: 加读锁后执行，执行完成后释放
+     * @param name 锁名称
+     * @param waitMillis 最长等待时间（毫秒）
+     * @param action 持有锁期间执行的操作
+     * @return 操作的返回值
+     * @throws IllegalStateException 等待超时未获得锁
+     */
+    public <T> T executeWithReadLock(String name, long waitMillis, Supplier<T> action) throws InterruptedException {
+        return execute(tryReadLock(name, waitMillis), name, action);
+    }
+
+    /**
+     * @description: 加写锁后执行，执行完成后释放
+     * @param name 锁名称
+     * @param waitMillis 最长等待时间（毫秒）
+     * @param action 持有锁期间执行的操作
+     * @return 操作的返回值
+     * @throws IllegalStateException 等待超时未获得锁
+     */
+    public <T> T executeWithWriteLock(String name, long waitMillis, Supplier<T> action) throws InterruptedException {
+        return execute(tryWriteLock(name, waitMillis), name, action);
+    }
+
+    /**
+     * @description: 释放锁，停止续期
+     * @param lease 加锁时返回的租约
+     * @return 是否由本租约释放；锁已过期时返回false
+     */
+    public boolean unlock(Lease lease) {
+        if (!lease.stop()) {
+            return false;
+        }
+        return release(lease.key, lease.token, lease.mode);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        for (Lease lease : leases) {
+            unlock(lease);
+        }
+    }
+
+    private Lease tryLock(String name, String mode, long waitMillis, long leaseMillis, boolean renew)
+            throws InterruptedException {
+        if (leaseMillis <= 0) {
+            throw new IllegalArgumentException("leaseMillis must be positive");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, waitMillis));
+        String key = RW_LOCK_KEY_PREFIX + name;
+        List<String> keys = Arrays.asList(key, key + INTENT_SUFFIX);
+        String token = instanceId + ":" + sequence.incrementAndGet();
+        String script = WRITE.equals(mode) ? WRITE_ACQUIRE_SCRIPT : READ_ACQUIRE_SCRIPT;
+        boolean acquired = false;
+        try (LockReleaseNotifier.Waiter waiter = lockReleaseNotifier.register(key)) {
+            for (;;) {
+                Long ttl;
+                try (Jedis jedis = jedisPool.getResource()) {
+                    ttl = luaDemo.execute(jedis, script, Long.class, keys, token, Long.toString(leaseMillis));
+                }
+                if (ttl == null) {
+                    acquired = true;
+                    return newLease(name, key, token, mode, leaseMillis, renew);
+                }
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return null;
+                }
+                waiter.await(ttl, remaining);
+            }
+        } finally {
+            if (!acquired && WRITE.equals(mode)) {
+                // 放弃等待的写者撤回写意向，放行被挡住的读者
+                release(key, token, INTENT);
+            }
+        }
+    }
+
+    private <T> T execute(Lease lease, String name, Supplier<T> action) {
+        if (lease == null) {
+            throw new IllegalStateException("Timed out waiting for lock: " + name);
+        }
+        try (Lease held = lease) {
+            return action.get();
+        }
+    }
+
+    private boolean release(String key, String token, String mode) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return luaDemo.execute(jedis, RELEASE_SCRIPT, Long.class, Arrays.asList(key, key + INTENT_SUFFIX),
+                    token, mode, LockReleaseNotifier.RELEASE_CHANNEL) > 0;
+        }
+    }
+
+    private Lease newLease(String name, String key, String token, String mode, long leaseMillis, boolean renew) {
+        Lease lease = new Lease(name, key, token, mode, leaseMillis);
+        if (renew) {
+            leases.add(lease);
+            long period = Math.max(1, leaseMillis / 3);
+            synchronized (lease) {
+                lease.renewal = watchdog.scheduleWithFixedDelay(() -> renew(lease), period, period,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+        return lease;
+    }
+
+    /**
+     * 看门狗续期；持有者字段不存在说明租约已过期，停止续期
+     */
+    private void renew(Lease lease) {
+        if (lease.released) {
+            return;
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            Long renewed = luaDemo.execute(jedis, RENEW_SCRIPT, Long.class, Collections.singletonList(lease.key),
+                    lease.token, lease.mode, Long.toString(lease.leaseMillis));
+            if (renewed == 0L) {
+                log.warn("读写锁{}的{}租约已失效，停止续期", lease.name, lease.mode);
+                lease.lost = true;
+                lease.stop();
+            }
+        } catch (RuntimeException e) {
+            // 下次重试，连续失败超过租期时锁会过期
+            log.warn("读写锁{}续期失败：{}", lease.name, e.getMessage());
+        }
+    }
+
+    /**
+     * 一次加锁的租约，关闭时释放锁
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final String name;
+
+        private final String key;
+
+        private final String token;
+
+        private final String mode;
+
+        private final long leaseMillis;
+
+        private volatile ScheduledFuture<?> renewal;
+
+        private volatile boolean released;
+
+        private volatile boolean lost;
+
+        private Lease(String name, String key, String token, String mode, long leaseMillis) {
+            this.name = name;
+            this.key = key;
+            this.token = token;
+            this.mode = mode;
+            this.leaseMillis = leaseMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isWrite() {
+            return WRITE.equals(mode);
+        }
+
+        /**
+         * @description: 看门狗续期时是否发现租约已失效
+         * @return 是否已丢失
+         */
+        public boolean isLost() {
+            return lost;
+        }
+
+        @Override
+        public void close() {
+            unlock(this);
+        }
+
+        /**
+         * @return 是否是第一次停止
+         */
+        private synchronized boolean stop() {
+            if (released) {
+                return false;
+            }
+            released = true;
+            leases.remove(this);
+            if (renewal != null) {
+                renewal.cancel(false);
+            }
+            return true;
+        }
+    }
+}
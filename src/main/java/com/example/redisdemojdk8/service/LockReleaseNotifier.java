@@ -0,0 +1,162 @@
+package com.example.redisdemojdk8.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 锁释放通知
+ * <p>解锁脚本删除Key后向 {@link #RELEASE_CHANNEL} 发布锁的Key。每个进程一个订阅连接，第一次有人等待时建立，
+ * 断开后自动重连；收到通知时唤醒本进程中登记在该Key上的所有等待者。通知只是加速，
+ * 等待者最多阻塞到锁的剩余租期，订阅未就绪时最多阻塞 redis.lock.retry-millis，丢失通知不会导致永久等待。</p>
+ *
+ * @author Kent HAN
+ * @date 2023/12/27 10:00
+ */
+@Slf4j
+@Component
+public class LockReleaseNotifier {
+
+    /**
+     * 锁释放通知的频道，消息内容为锁的Key
+     */
+    public static final String RELEASE_CHANNEL = DistributedLock.LOCK_KEY_PREFIX + "released";
+
+    @Resource
+    private JedisPool jedisPool;
+
+    /**
+     * 订阅连接未就绪或锁没有过期时间时，等待者的最长阻塞时间（毫秒）
+     */
+    @Value("${redis.lock.retry-millis:50}")
+    private long retryMillis;
+
+    private final ConcurrentHashMap<String, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    private final Listener listener = new Listener();
+
+    private Thread subscriber;
+
+    private volatile boolean running = true;
+
+    /**
+     * @description: 在锁的Key上登记等待者，应在第一次尝试加锁之前登记，避免错过尝试期间的释放通知
+     * @param key 锁的Key
+     * @return 等待者，用完后关闭
+     */
+    public Waiter register(String key) {
+        Waiter waiter = new Waiter(key);
+        waiters.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(waiter);
+        return waiter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (listener.isSubscribed()) {
+            listener.unsubscribe();
+        }
+        synchronized (this) {
+            if (subscriber != null) {
+                subscriber.interrupt();
+            }
+        }
+    }
+
+    /**
+     * 首次有人等待时启动订阅线程，断开后自动重连
+     */
+    private synchronized void ensureSubscribed() {
+        if (subscriber != null || !running) {
+            return;
+        }
+        subscriber = new Thread(() -> {
+            while (running) {
+                try (Jedis jedis = jedisPool.getResource()) {
+                    jedis.subscribe(listener, RELEASE_CHANNEL);
+                } catch (RuntimeException e) {
+                    if (!running) {
+                        return;
+                    }
+                    log.warn("锁释放通知订阅断开：{}", e.getMessage());
+                }
+                // 断开期间的通知可能丢失，唤醒所有等待者重试一次
+                waiters.values().forEach(set -> set.forEach(Waiter::signal));
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "redis-lock-subscriber");
+        subscriber.setDaemon(true);
+        subscriber.start();
+    }
+
+    /**
+     * 登记在一个锁的Key上的等待者
+     */
+    public final class Waiter implements AutoCloseable {
+
+        private final String key;
+
+        /**
+         * 最多保留一个许可，等待前到达的通知不会丢失，也不会累积
+         */
+        private final Semaphore signal = new Semaphore(0);
+
+        private Waiter(String key) {
+            this.key = key;
+        }
+
+        /**
+         * @description: 等待释放通知
+         * @param ttlMillis 锁的剩余租期（毫秒），小于等于0表示未知
+         * @param remainingMillis 调用方剩余的等待时间（毫秒）
+         */
+        public void await(long ttlMillis, long remainingMillis) throws InterruptedException {
+            ensureSubscribed();
+            long park = ttlMillis > 0 ? ttlMillis : retryMillis;
+            if (!listener.isSubscribed()) {
+                park = Math.min(park, retryMillis);
+            }
+            signal.tryAcquire(Math.min(park, remainingMillis), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void close() {
+            waiters.computeIfPresent(key, (k, set) -> {
+                set.remove(this);
+                return set.isEmpty() ? null : set;
+            });
+        }
+
+        private void signal() {
+            if (signal.availablePermits() == 0) {
+                signal.release();
+            }
+        }
+    }
+
+    /**
+     * 释放通知的订阅
+     */
+    private final class Listener extends JedisPubSub {
+
+        @Override
+        public void onMessage(String channel, String message) {
+            waiters.getOrDefault(message, Collections.emptySet()).forEach(Waiter::signal);
+        }
+    }
+}
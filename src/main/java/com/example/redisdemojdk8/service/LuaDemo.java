@@ -1,14 +1,336 @@
 package com.example.redisdemojdk8.service;
 
+import com.example.redisdemojdk8.util.RedisCommandStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Lua脚本注册表
+ * <p>启动时扫描 redis.scripts.locations 下的所有 *.lua，读取一次脚本内容并计算SHA1，用一次管道把所有脚本SCRIPT LOAD到Redis。
+ * 之后按脚本名（文件名去掉.lua）调用，只发送40字节的SHA1（EVALSHA），不再每次发送整个脚本。
+ * 主从切换或SCRIPT FLUSH之后Redis返回NOSCRIPT，此时重新SCRIPT LOAD并重试一次。</p>
+ * <p>应用内的脚本（锁、读写锁、限流、信号量、RedisUtils带过期时间的写入）都通过这里执行，
+ * 通过RedisTemplate执行时使用 {@link #execute(String, Class, List, String...)} 或
+ * {@link #executeBinary(String, Class, List, List)}，通过JedisPool执行时使用 {@link #execute(Jedis, String, Class, List, String...)}。
+ * 每个脚本的调用次数、错误数和延迟分位数见 {@link #stats()}，NOSCRIPT之后的重新加载次数见 {@link #getReloadCount()}。
+ * classpath*:lua/*.lua 下的内置脚本总是注册，不受 redis.scripts.locations 影响。</p>
+ * <pre>
+ * Long sum = luaDemo.execute("myscript", Long.class, Collections.emptyList(), "10", "20");
+ * </pre>
+ *
  * @author Kent HAN
  * @date 2023/12/12 11:41
  */
+@Slf4j
 @Service
 public class LuaDemo {
-    public void luaDemoMethod() {
 
+    private static final String SCRIPT_SUFFIX = ".lua";
+
+    /**
+     * 应用内置脚本的位置
+     */
+    private static final String BUILTIN_LOCATION = "classpath*:lua/*.lua";
+
+    @javax.annotation.Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 脚本所在位置，逗号分隔
+     */
+    @Value("${redis.scripts.locations:classpath*:*.lua,classpath*:lua/*.lua}")
+    private String[] locations;
+
+    private final Map<String, Script> scripts = new ConcurrentHashMap<>();
+
+    private final RedisCommandStats stats = new RedisCommandStats();
+
+    /**
+     * NOSCRIPT之后重新加载的次数
+     */
+    private final LongAdder reloads = new LongAdder();
+
+    @PostConstruct
+    public void init() throws IOException {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        Set<String> resolved = new LinkedHashSet<>();
+        for (String location : locations) {
+            resolved.add(location.trim());
+        }
+        resolved.add(BUILTIN_LOCATION);
+        for (String location : resolved) {
+            for (Resource resource : resolver.getResources(location)) {
+                register(resource);
+            }
+        }
+        try {
+            preload();
+        } catch (RuntimeException e) {
+            // Redis暂时不可用时不影响启动，第一次调用时收到NOSCRIPT再加载
+            log.warn("预加载Lua脚本失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * @description: 示例，调用 myscript.lua 计算两数之和
+     * @param a 加数
+     * @param b 加数
+     * @return 和
+     */
+    public Long luaDemoMethod(long a, long b) {
+        return execute("myscript", Long.class, Collections.emptyList(), Long.toString(a), Long.toString(b));
+    }
+
+    /**
+     * @description: 按脚本名执行，使用EVALSHA，Redis中没有该脚本时重新加载后重试
+     * @param name 脚本名，即文件名去掉.lua
+     * @param resultType 返回值类型：Long、Boolean、List、String，null表示不关心返回值
+     * @param keys 脚本的KEYS
+     * @param args 脚本的ARGV
+     * @return 脚本返回值，批量字符串转换为String
+     */
+    public <T> T execute(String name, Class<T> resultType, List<String> keys, String... args) {
+        List<byte[]> rawArgs = new ArrayList<>(args.length);
+        for (String arg : args) {
+            rawArgs.add(arg.getBytes(StandardCharsets.UTF_8));
+        }
+        return executeBinary(name, resultType, keys, rawArgs);
+    }
+
+    /**
+     * @description: 按脚本名执行，ARGV为已经序列化好的字节，用于写入按模板序列化的值
+     * @param name 脚本名，即文件名去掉.lua
+     * @param resultType 返回值类型：Long、Boolean、List、String，null表示不关心返回值
+     * @param keys 脚本的KEYS
+     * @param args 脚本的ARGV
+     * @return 脚本返回值，批量字符串转换为String
+     */
+    public <T> T executeBinary(String name, Class<T> resultType, List<String> keys, List<byte[]> args) {
+        Script script = script(name);
+        ReturnType returnType = ReturnType.fromJavaType(resultType);
+        byte[][] keysAndArgs = keysAndArgs(keys, args);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = stringRedisTemplate.execute((RedisCallback<Object>) connection ->
+                    evalSha(connection, script, returnType, keys.size(), keysAndArgs));
+            failed = false;
+            return resultType == null ? null : resultType.cast(deserialize(result));
+        } finally {
+            stats.record(name, System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * @description: 在调用方借出的Jedis连接上按脚本名执行，Redis中没有该脚本时重新加载后重试
+     * @param jedis Jedis连接，由调用方归还
+     * @param name 脚本名，即文件名去掉.lua
+     * @param resultType 返回值类型：Long、List、String，null表示不关心返回值
+     * @param keys 脚本的KEYS
+     * @param args 脚本的ARGV
+     * @return 脚本返回值
+     */
+    public <T> T execute(Jedis jedis, String name, Class<T> resultType, List<String> keys, String... args) {
+        Script script = script(name);
+        List<String> argv = Arrays.asList(args);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result;
+            try {
+                result = jedis.evalsha(script.sha1, keys, argv);
+            } catch (JedisNoScriptException e) {
+                reloads.increment();
+                log.info("Redis中没有Lua脚本{}，重新加载", script.name);
+                jedis.scriptLoad(script.body);
+                result = jedis.evalsha(script.sha1, keys, argv);
+            }
+            failed = false;
+            return resultType == null ? null : resultType.cast(result);
+        } finally {
+            stats.record(name, System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * @description: 用一次管道把所有脚本SCRIPT LOAD到Redis，主从切换后也可以主动调用
+     */
+    public void preload() {
+        List<Script> all = new ArrayList<>(scripts.values());
+        if (all.isEmpty()) {
+            return;
+        }
+        List<Object> loaded = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Script script : all) {
+                connection.scriptingCommands().scriptLoad(script.body);
+            }
+            return null;
+        });
+        for (int i = 0; i < all.size(); i++) {
+            if (!all.get(i).sha1.equals(loaded.get(i))) {
+                log.warn("Lua脚本{}的SHA1与Redis返回的不一致：{}", all.get(i).name, loaded.get(i));
+            }
+        }
+        log.info("已加载{}个Lua脚本：{}", all.size(), new TreeMap<>(scripts).keySet());
+    }
+
+    /**
+     * @description: 已注册的脚本名及其SHA1
+     * @return 脚本名到SHA1的映射，按脚本名排序
+     */
+    public Map<String, String> scripts() {
+        Map<String, String> result = new TreeMap<>();
+        scripts.forEach((name, script) -> result.put(name, script.sha1));
+        return result;
+    }
+
+    /**
+     * @description: 各脚本的调用次数、错误数和延迟分位数
+     * @return 脚本名到统计结果的映射
+     */
+    public Map<String, Map<String, Object>> stats() {
+        return stats.snapshot();
+    }
+
+    /**
+     * @description: 清空调用统计
+     */
+    public void resetStats() {
+        stats.reset();
+        reloads.reset();
+    }
+
+    /**
+     * @return 收到NOSCRIPT后重新加载的次数
+     */
+    public long getReloadCount() {
+        return reloads.sum();
+    }
+
+    private Script script(String name) {
+        Script script = scripts.get(name);
+        if (script == null) {
+            throw new IllegalArgumentException("Unknown Lua script: " + name);
+        }
+        return script;
+    }
+
+    private void register(Resource resource) throws IOException {
+        String filename = resource.getFilename();
+        if (filename == null || !filename.endsWith(SCRIPT_SUFFIX)) {
+            return;
+        }
+        String name = filename.substring(0, filename.length() - SCRIPT_SUFFIX.length());
+        byte[] body = StreamUtils.copyToByteArray(resource.getInputStream());
+        Script previous = scripts.putIfAbsent(name, new Script(name, body));
+        if (previous != null) {
+            log.warn("Lua脚本重名，忽略{}", resource);
+        }
+    }
+
+    private Object evalSha(RedisConnection connection, Script script, ReturnType returnType, int numKeys,
+                           byte[][] keysAndArgs) {
+        try {
+            return connection.scriptingCommands().evalSha(script.sha1, returnType, numKeys, keysAndArgs);
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            reloads.increment();
+            log.info("Redis中没有Lua脚本{}，重新加载", script.name);
+            connection.scriptingCommands().scriptLoad(script.body);
+            return connection.scriptingCommands().evalSha(script.sha1, returnType, numKeys, keysAndArgs);
+        }
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().startsWith("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[][] keysAndArgs(List<String> keys, List<byte[]> args) {
+        byte[][] keysAndArgs = new byte[keys.size() + args.size()][];
+        int i = 0;
+        for (String key : keys) {
+            keysAndArgs[i++] = key.getBytes(StandardCharsets.UTF_8);
+        }
+        for (byte[] arg : args) {
+            keysAndArgs[i++] = arg;
+        }
+        return keysAndArgs;
+    }
+
+    private static Object deserialize(Object result) {
+        if (result instanceof byte[]) {
+            return new String((byte[]) result, StandardCharsets.UTF_8);
+        }
+        if (result instanceof List) {
+            List<Object> values = new ArrayList<>();
+            for (Object value : (List<?>) result) {
+                values.add(deserialize(value));
+            }
+            return values;
+        }
+        return result;
+    }
+
+    private static String sha1Hex(byte[] body) {
+        try {
+            StringBuilder hex = new StringBuilder(40);
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(body)) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 一个已注册的脚本，内容和SHA1只计算一次
+     */
+    private static final class Script {
+
+        private final String name;
+
+        private final byte[] body;
+
+        private final String sha1;
+
+        private Script(String name, byte[] body) {
+            this.name = name;
+            this.body = body;
+            this.sha1 = sha1Hex(body);
+        }
     }
 }
@@ -0,0 +1,321 @@
+package com.example.redisdemojdk8.service;
+
+import com.example.redisdemojdk8.constant.Constant;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于Lua脚本的分布式限流
+ * <p>提供令牌桶、滑动窗口日志和带租约的计数信号量，每次判断都是一次脚本调用，多个节点共享同一份额度。
+ * 脚本按Redis服务器的TIME计时，不受各节点时钟偏差影响。每种方式都可以一次申请多个许可，用于批量下发等场景。</p>
+ * <ul>
+ *     <li>令牌桶：允许不超过容量的突发，长期速率不超过补充速率</li>
+ *     <li>滑动窗口：任意窗口长度内放行次数不超过上限，每次放行在zset中占一个成员</li>
+ *     <li>信号量：同时持有的许可数不超过上限，持有者宕机后许可在租期结束后自动归还</li>
+ * </ul>
+ *
+ * @author Kent HAN
+ * @date 2023/12/27 15:00
+ */
+@Service
+public class RateLimiter {
+
+    /**
+     * 限流Key前缀
+     */
+    public static final String RATE_LIMIT_KEY_PREFIX = Constant.KEY_PREFIX + "ratelimit:";
+
+    /**
+     * 信号量Key前缀
+     */
+    public static final String SEMAPHORE_KEY_PREFIX = Constant.KEY_PREFIX + "semaphore:";
+
+    private static final String TOKEN_BUCKET_SCRIPT = "rate_token_bucket";
+
+    private static final String SLIDING_WINDOW_SCRIPT = "rate_sliding_window";
+
+    private static final String SEMAPHORE_ACQUIRE_SCRIPT = "semaphore_acquire";
+
+    private static final String SEMAPHORE_RELEASE_SCRIPT = "semaphore_release";
+
+    @Resource
+    private LuaDemo luaDemo;
+
+    @Resource
+    private LockReleaseNotifier lockReleaseNotifier;
+
+    /**
+     * 令牌前缀，区分进程
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @description: 令牌桶限流，申请一个令牌
+     * @param name 限流名称
+     * @param capacity 桶容量，即允许的最大突发
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @return 是否放行
+     */
+    public boolean tryAcquireToken(String name, long capacity, double permitsPerSecond) {
+        return acquireTokens(name, 1, capacity, permitsPerSecond).isGranted();
+    }
+
+    /**
+     * @description: 令牌桶限流，一次申请多个令牌，令牌不足时一个也不扣
+     * @param name 限流名称
+     * @param permits 申请的令牌数
+     * @param capacity 桶容量，即允许的最大突发
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @return 判断结果，未放行时包含需要等待的时间
+     */
+    public Decision acquireTokens(String name, int permits, long capacity, double permitsPerSecond) {
+        checkPermits(permits, capacity);
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        return decide(TOKEN_BUCKET_SCRIPT, RATE_LIMIT_KEY_PREFIX + "bucket:" + name,
+                Long.toString(capacity), Double.toString(permitsPerSecond), Integer.toString(permits));
+    }
+
+    /**
+     * @description: 令牌桶限流，令牌不足时按脚本返回的等待时间休眠后重试
+     * @param name 限流名称
+     * @param permits 申请的令牌数
+     * @param capacity 桶容量
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @param timeoutMillis 最长等待时间（毫秒）
+     * @return 是否在超时前获得
+     */
+    public boolean acquireTokens(String name, int permits, long capacity, double permitsPerSecond,
+                                 long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (;;) {
+            Decision decision = acquireTokens(name, permits, capacity, permitsPerSecond);
+            if (decision.isGranted()) {
+                return true;
+            }
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (decision.getWaitMillis() > remaining) {
+                // 等到超时也不够，直接失败
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(decision.getWaitMillis());
+        }
+    }
+
+    /**
+     * @description: 滑动窗口限流，任意windowMillis长度内最多放行limit次
+     * @param name 限流名称
+     * @param permits 申请的次数
+     * @param limit 窗口内允许的次数
+     * @param windowMillis 窗口长度（毫秒）
+     * @return 判断结果，未放行时包含需要等待的时间
+     */
+    public Decision acquireWindow(String name, int permits, long limit, long windowMillis) {
+        checkPermits(permits, limit);
+        return decide(SLIDING_WINDOW_SCRIPT, RATE_LIMIT_KEY_PREFIX + "window:" + name,
+                Long.toString(limit), Long.toString(windowMillis), Integer.toString(permits), nextToken());
+    }
+
+    /**
+     * @description: 滑动窗口限流，申请一次
+     * @param name 限流名称
+     * @param limit 窗口内允许的次数
+     * @param windowMillis 窗口长度（毫秒）
+     * @return 是否放行
+     */
+    public boolean tryAcquireWindow(String name, long limit, long windowMillis) {
+        return acquireWindow(name, 1, limit, windowMillis).isGranted();
+    }
+
+    /**
+     * @description: 尝试获取信号量许可，不等待
+     * @param name 信号量名称
+     * @param permits 申请的许可数
+     * @param limit 许可总数
+     * @param leaseMillis 租期（毫秒），到期未释放的许可自动归还
+     * @return 许可，许可不足时返回null
+     */
+    public Permits tryAcquirePermits(String name, int permits, long limit, long leaseMillis) {
+        checkPermits(permits, limit);
+        String key = SEMAPHORE_KEY_PREFIX + name;
+        String token = nextToken();
+        return acquirePermits(key, token, permits, limit, leaseMillis).isGranted()
+                ? new Permits(name, key, token, permits) : null;
+    }
+
+    /**
+     * @description: 在等待时间内获取信号量许可，许可归还时通过释放通知唤醒
+     * @param name 信号量名称
+     * @param permits 申请的许可数
+     * @param limit 许可总数
+     * @param leaseMillis 租期（毫秒），到期未释放的许可自动归还
+     * @param waitMillis 最长等待时间（毫秒）
+     * @return 许可，超时未获得时返回null
+     */
+    public Permits tryAcquirePermits(String name, int permits, long limit, long leaseMillis, long waitMillis)
+            throws InterruptedException {
+        checkPermits(permits, limit);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        String key = SEMAPHORE_KEY_PREFIX + name;
+        String token = nextToken();
+        try (LockReleaseNotifier.Waiter waiter = lockReleaseNotifier.register(key)) {
+            for (;;) {
+                Decision decision = acquirePermits(key, token, permits, limit, leaseMillis);
+                if (decision.isGranted()) {
+                    return new Permits(name, key, token, permits);
+                }
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return null;
+                }
+                waiter.await(decision.getWaitMillis(), remaining);
+            }
+        }
+    }
+
+    /**
+     * @description: 归还许可
+     * @param permits 获取时返回的许可
+     * @return 归还的许可数，租约已到期的许可不计入
+     */
+    public long release(Permits permits) {
+        return updatePermits(permits, 0);
+    }
+
+    /**
+     * @description: 续期许可，长时间持有时调用
+     * @param permits 获取时返回的许可
+     * @param leaseMillis 新的租期（毫秒），从现在开始计算
+     * @return 是否全部续期成功，租约已到期被回收时返回false
+     */
+    public boolean renew(Permits permits, long leaseMillis) {
+        if (leaseMillis <= 0) {
+            throw new IllegalArgumentException("leaseMillis must be positive");
+        }
+        return updatePermits(permits, leaseMillis) == permits.count;
+    }
+
+    private Decision acquirePermits(String key, String token, int permits, long limit, long leaseMillis) {
+        if (leaseMillis <= 0) {
+            throw new IllegalArgumentException("leaseMillis must be positive");
+        }
+        return decide(SEMAPHORE_ACQUIRE_SCRIPT, key,
+                Long.toString(limit), Long.toString(leaseMillis), Integer.toString(permits), token);
+    }
+
+    private long updatePermits(Permits permits, long leaseMillis) {
+        Long changed = luaDemo.execute(SEMAPHORE_RELEASE_SCRIPT, Long.class, Collections.singletonList(permits.key),
+                permits.token, Integer.toString(permits.count), Long.toString(leaseMillis),
+                LockReleaseNotifier.RELEASE_CHANNEL);
+        return changed == null ? 0 : changed;
+    }
+
+    private Decision decide(String script, String key, String... args) {
+        List<?> result = luaDemo.execute(script, List.class, Collections.singletonList(key), args);
+        if (result == null || result.size() < 3) {
+            throw new IllegalStateException("Unexpected rate limit script result: " + result);
+        }
+        return new Decision(((Long) result.get(0)) == 1L, (Long) result.get(1), (Long) result.get(2));
+    }
+
+    private String nextToken() {
+        return instanceId + ":" + sequence.incrementAndGet();
+    }
+
+    private static void checkPermits(int permits, long limit) {
+        if (permits <= 0 || limit <= 0) {
+            throw new IllegalArgumentException("permits and limit must be positive");
+        }
+        if (permits > limit) {
+            // 超过总数的申请永远无法满足
+            throw new IllegalArgumentException("permits " + permits + " exceeds limit " + limit);
+        }
+    }
+
+    /**
+     * 限流判断结果
+     */
+    public static final class Decision {
+
+        private final boolean granted;
+
+        private final long remaining;
+
+        private final long waitMillis;
+
+        private Decision(boolean granted, long remaining, long waitMillis) {
+            this.granted = granted;
+            this.remaining = remaining;
+            this.waitMillis = waitMillis;
+        }
+
+        /**
+         * @return 是否放行
+         */
+        public boolean isGranted() {
+            return granted;
+        }
+
+        /**
+         * @return 判断之后剩余的令牌数或次数
+         */
+        public long getRemaining() {
+            return remaining;
+        }
+
+        /**
+         * @return 未放行时建议的等待时间（毫秒），不保证等待后一定放行
+         */
+        public long getWaitMillis() {
+            return waitMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Decision{granted=" + granted + ", remaining=" + remaining + ", waitMillis=" + waitMillis + "}";
+        }
+    }
+
+    /**
+     * 获得的信号量许可，关闭时归还
+     */
+    public final class Permits implements AutoCloseable {
+
+        private final String name;
+
+        private final String key;
+
+        private final String token;
+
+        private final int count;
+
+        private Permits(String name, String key, String token, int count) {
+            this.name = name;
+            this.key = key;
+            this.token = token;
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+}
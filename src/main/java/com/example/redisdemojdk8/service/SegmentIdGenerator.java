@@ -0,0 +1,207 @@
+package com.example.redisdemojdk8.service;
+
+import com.example.redisdemojdk8.constant.Constant;
+import com.example.redisdemojdk8.util.RedisUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 号段模式ID生成器
+ * <p>通过 {@link RedisUtils#getGlobalIdRange(String, long)} 一次预留一个号段，在本地无锁分配；
+ * 当前号段使用到20%时后台预取下一个号段（双buffer），号段大小根据消耗速度自动调整。</p>
+ *
+ * @author Kent HAN
+ * @date 2023/12/18 10:12
+ */
+@Slf4j
+@Service
+public class SegmentIdGenerator {
+
+    /**
+     * 号段使用比例达到该值时预取下一个号段
+     */
+    private static final double PREFETCH_RATIO = 0.2;
+
+    @Resource
+    private RedisUtils redisUtils;
+
+    /**
+     * 最小号段大小
+     */
+    @Value("${redis.id-segment.min-step:1000}")
+    private long minStep;
+
+    /**
+     * 最大号段大小
+     */
+    @Value("${redis.id-segment.max-step:1000000}")
+    private long maxStep;
+
+    /**
+     * 期望一个号段的使用时长（毫秒），用完更快则号段翻倍，超过两倍则号段减半
+     */
+    @Value("${redis.id-segment.duration-millis:900000}")
+    private long segmentDurationMillis;
+
+    private final ConcurrentHashMap<String, SegmentBuffer> buffers = new ConcurrentHashMap<>();
+
+    private final ExecutorService loader = Executors.newCachedThreadPool(new LoaderThreadFactory());
+
+    /**
+     * @description: 获取下一个ID
+     * @param name 业务名称，对应Redis中的计数Key
+     * @return 全局唯一且在单个节点内递增的ID
+     */
+    public long nextId(String name) {
+        SegmentBuffer buffer = buffers.computeIfAbsent(name, SegmentBuffer::new);
+        for (;;) {
+            Segment current = buffer.current;
+            if (current == null) {
+                switchSegment(buffer, null);
+                continue;
+            }
+            long id = current.cursor.getAndIncrement();
+            if (id < current.end) {
+                if (id - current.start >= current.prefetchAt) {
+                    prefetch(buffer);
+                }
+                return id;
+            }
+            switchSegment(buffer, current);
+        }
+    }
+
+    /**
+     * @description: 当前号段的大小，用于观察号段自适应调整
+     * @param name 业务名称
+     * @return 号段大小，未初始化时返回0
+     */
+    public long currentStep(String name) {
+        SegmentBuffer buffer = buffers.get(name);
+        return buffer == null ? 0 : buffer.step;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    private void prefetch(SegmentBuffer buffer) {
+        if (buffer.pending == null && buffer.loading.compareAndSet(false, true)) {
+            buffer.pending = CompletableFuture.supplyAsync(() -> loadSegment(buffer), loader);
+        }
+    }
+
+    /**
+     * 当前号段用尽时切换到下一个号段，只有切换时加锁
+     */
+    private void switchSegment(SegmentBuffer buffer, Segment exhausted) {
+        synchronized (buffer) {
+            if (buffer.current != exhausted) {
+                return;
+            }
+            Segment next = null;
+            CompletableFuture<Segment> pending = buffer.pending;
+            if (pending != null) {
+                try {
+                    next = pending.join();
+                } catch (RuntimeException e) {
+                    log.warn("预取号段失败，同步重新获取: {}", buffer.key, e);
+                }
+            }
+            if (next == null) {
+                next = loadSegment(buffer);
+            }
+            buffer.current = next;
+            buffer.pending = null;
+            buffer.loading.set(false);
+        }
+    }
+
+    private Segment loadSegment(SegmentBuffer buffer) {
+        long now = System.currentTimeMillis();
+        long step = buffer.step;
+        if (buffer.lastLoadTime > 0) {
+            long elapsed = now - buffer.lastLoadTime;
+            if (elapsed < segmentDurationMillis) {
+                step = Math.min(step * 2, maxStep);
+            } else if (elapsed > segmentDurationMillis * 2) {
+                step = Math.max(step / 2, minStep);
+            }
+        } else {
+            step = Math.max(step, minStep);
+        }
+        long start = redisUtils.getGlobalIdRange(buffer.key, step);
+        buffer.step = step;
+        buffer.lastLoadTime = now;
+        log.debug("加载号段 key={} start={} step={}", buffer.key, start, step);
+        return new Segment(start, step);
+    }
+
+    /**
+     * 已预留的号段[start, end)
+     */
+    private static final class Segment {
+
+        private final long start;
+
+        private final long end;
+
+        private final long prefetchAt;
+
+        private final AtomicLong cursor;
+
+        private Segment(long start, long step) {
+            this.start = start;
+            this.end = start + step;
+            this.prefetchAt = (long) (step * PREFETCH_RATIO);
+            this.cursor = new AtomicLong(start);
+        }
+    }
+
+    /**
+     * 单个业务的双buffer
+     */
+    private static final class SegmentBuffer {
+
+        private final String key;
+
+        private final AtomicBoolean loading = new AtomicBoolean();
+
+        private volatile Segment current;
+
+        private volatile CompletableFuture<Segment> pending;
+
+        private volatile long step;
+
+        private volatile long lastLoadTime;
+
+        private SegmentBuffer(String name) {
+            this.key = Constant.KEY_PREFIX + "id_" + name;
+        }
+    }
+
+    private static final class LoaderThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger index = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "segment-id-loader-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
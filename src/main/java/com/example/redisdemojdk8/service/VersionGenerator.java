@@ -0,0 +1,153 @@
+package com.example.redisdemojdk8.service;
+
+import com.example.redisdemojdk8.constant.Constant;
+import com.example.redisdemojdk8.util.RedisUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.util.Calendar;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 按天递增的版本号生成器，替代 {@link RedisUtils#getVersion(String)}
+ * <p>版本号格式为yyyyMMdd-NNN，序号至少三位，超过999后自动加宽。
+ * 当天的Key和零点切换时间在本地缓存，序号按批从Redis预留，批内分配不访问Redis。
+ * 批次大于1时多个节点之间的序号不保证按时间顺序，且跨天时未用完的序号会被跳过。
+ * 跨天时缓存的日期只会向后切换，零点前读到旧日期的线程沿用新的一天，不会回到旧日期的Key。</p>
+ *
+ * @author Kent HAN
+ * @date 2023/12/18 15:40
+ */
+@Service
+public class VersionGenerator {
+
+    /**
+     * 序号最小位数
+     */
+    private static final int MIN_SEQUENCE_WIDTH = 3;
+
+    @Resource
+    private RedisUtils redisUtils;
+
+    /**
+     * 每次从Redis预留的序号数量
+     */
+    @Value("${redis.version.batch-size:10}")
+    private int batchSize;
+
+    private final ConcurrentHashMap<String, TypeSequence> sequences = new ConcurrentHashMap<>();
+
+    private final AtomicReference<Day> today = new AtomicReference<>(Day.of(System.currentTimeMillis()));
+
+    /**
+     * @description: 根据类型生成版本号
+     * @param type 类型key区分
+     * @return 版本号，格式yyyyMMdd-NNN
+     */
+    public String nextVersion(String type) {
+        return sequences.computeIfAbsent(type, TypeSequence::new).next(currentDay());
+    }
+
+    private Day currentDay() {
+        long now = System.currentTimeMillis();
+        for (;;) {
+            Day day = today.get();
+            if (now < day.nextMidnight) {
+                return day;
+            }
+            Day next = Day.of(now);
+            // CAS失败说明其他线程已切换到新的一天，重新读取
+            if (today.compareAndSet(day, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * 拼接日期和序号，序号不足三位时补0
+     */
+    static String format(String day, long sequence) {
+        String digits = Long.toString(sequence);
+        StringBuilder builder = new StringBuilder(day.length() + 1 + Math.max(digits.length(), MIN_SEQUENCE_WIDTH));
+        builder.append(day).append(Constant.SEPARATOR_MINUS);
+        for (int i = digits.length(); i < MIN_SEQUENCE_WIDTH; i++) {
+            builder.append('0');
+        }
+        return builder.append(digits).toString();
+    }
+
+    /**
+     * 单个类型当天已预留的序号批次
+     */
+    private final class TypeSequence {
+
+        private final String type;
+
+        private Day day;
+
+        private long next;
+
+        private long end;
+
+        private TypeSequence(String type) {
+            this.type = type;
+        }
+
+        private synchronized String next(Day current) {
+            if (day != null && current.nextMidnight < day.nextMidnight) {
+                // 零点前读到旧日期的线程，沿用已切换的新一天
+                current = day;
+            }
+            if (day == null || current.nextMidnight != day.nextMidnight || next >= end) {
+                String key = Constant.KEY_PREFIX + type + current.text;
+                long start = redisUtils.incrAndExpireAt(key, batchSize, current.nextMidnight) - batchSize + 1;
+                day = current;
+                next = start;
+                end = start + batchSize;
+            }
+            return format(day.text, next++);
+        }
+    }
+
+    /**
+     * 缓存的当天日期字符串和下一个零点时间
+     */
+    private static final class Day {
+
+        private final String text;
+
+        private final long nextMidnight;
+
+        private Day(String text, long nextMidnight) {
+            this.text = text;
+            this.nextMidnight = nextMidnight;
+        }
+
+        private static Day of(long now) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(now);
+            int year = calendar.get(Calendar.YEAR);
+            int month = calendar.get(Calendar.MONTH) + 1;
+            int date = calendar.get(Calendar.DAY_OF_MONTH);
+            char[] chars = new char[8];
+            writeDigits(chars, 0, year, 4);
+            writeDigits(chars, 4, month, 2);
+            writeDigits(chars, 6, date, 2);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            return new Day(new String(chars), calendar.getTimeInMillis());
+        }
+
+        private static void writeDigits(char[] chars, int offset, int value, int width) {
+            for (int i = offset + width - 1; i >= offset; i--) {
+                chars[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.redisdemojdk8.util;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * @description: 按编解码器注册表序列化的RedisSerializer
+ * <p>使用指定编解码器的值格式为：头字节0xC0 + 编解码器ID + 编码数据。0xC0在UTF-8中不会出现，
+ * 不带头字节的数据按原有的序列化方式（legacy）读写。</p>
+ * @author Kent HAN
+ * @date 2023/12/21 10:15
+ */
+public class CodecRedisSerializer implements RedisSerializer<Object> {
+
+    /**
+     * 带编解码器ID的数据的头字节
+     */
+    public static final byte CODEC_HEADER = (byte) 0xC0;
+
+    private static final int HEADER_LENGTH = 2;
+
+    private final RedisCodecRegistry registry;
+
+    private final RedisSerializer<Object> legacy;
+
+    /**
+     * @param registry 编解码器注册表
+     * @param legacy 没有指定编解码器时使用的序列化方式
+     */
+    public CodecRedisSerializer(RedisCodecRegistry registry, RedisSerializer<?> legacy) {
+        this.registry = registry;
+        this.legacy = (RedisSerializer<Object>) legacy;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return legacy.serialize(null);
+        }
+        RedisCodec codec = registry.codecForType(value.getClass());
+        return codec == null ? legacy.serialize(value) : encode(codec, value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0 || bytes[0] != CODEC_HEADER) {
+            return legacy.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_LENGTH) {
+            throw new SerializationException("Codec payload is too short");
+        }
+        return registry.codec(bytes[1] & 0xFF).decode(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+    }
+
+    /**
+     * @description: 按Key前缀序列化，前缀没有指定编解码器时按值类型序列化
+     * @param key redis的Key
+     * @param value 值
+     * @return 序列化后的字节
+     */
+    public byte[] serialize(String key, Object value) {
+        RedisCodec codec = value == null ? null : registry.codecForKey(key);
+        return codec == null ? serialize(value) : encode(codec, value);
+    }
+
+    /**
+     * @description: Key前缀是否指定了编解码器
+     * @param key redis的Key
+     * @return boolean true:已指定 false:未指定
+     */
+    public boolean hasKeyCodec(String key) {
+        return registry.codecForKey(key) != null;
+    }
+
+    private static byte[] encode(RedisCodec codec, Object value) {
+        byte[] payload = codec.encode(value);
+        byte[] bytes = new byte[payload.length + HEADER_LENGTH];
+        bytes[0] = CODEC_HEADER;
+        bytes[1] = (byte) codec.id();
+        System.arraycopy(payload, 0, bytes, HEADER_LENGTH, payload.length);
+        return bytes;
+    }
+}
@@ -1,28 +1,83 @@
 package com.example.redisdemojdk8.util;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.SerializeWriter;
 import com.alibaba.fastjson.serializer.SerializerFeature;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.SerializationException;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 public class FastJson2JsonRedisSerializer<T> implements RedisSerializer<T> {
 
     public static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
 
+    /**
+     * 压缩数据的头字节，0xC1在UTF-8中不会出现，不会与未压缩的JSON混淆
+     * <p>压缩格式：头字节 + 4字节原始长度 + deflate数据</p>
+     */
+    public static final byte COMPRESSED_HEADER = (byte) 0xC1;
+
+    private static final int HEADER_LENGTH = 5;
+
+    /**
+     * 线程复用的缓冲区，超过该大小的缓冲区用完后释放，避免大对象长期占用内存
+     */
+    private static final int MAX_RETAINED_BUFFER = 256 * 1024;
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
     private Class<T> clazz;
 
+    /**
+     * 超过该字节数的JSON压缩后存储，小于等于0表示不压缩
+     */
+    private int compressThreshold;
+
     public FastJson2JsonRedisSerializer(Class<T> clazz) {
-        super(); this.clazz = clazz;
+        this(clazz, 0);
     }
 
+    public FastJson2JsonRedisSerializer(Class<T> clazz, int compressThreshold) {
+        super(); this.clazz = clazz; this.compressThreshold = compressThreshold;
+    }
+
+    /**
+     * 对象直接编码为UTF-8写入线程复用的缓冲区，不生成中间String，结果与toJSONString后getBytes一致
+     */
     @Override
     public byte[] serialize(T t) throws SerializationException {
         if (t == null) {
             return new byte[0];
         }
-        return JSON.toJSONString(t, SerializerFeature.WriteClassName).getBytes(DEFAULT_CHARSET);
+        Buffers buffers = BUFFERS.get();
+        try {
+            PooledOutputStream json = buffers.json;
+            SerializeWriter writer = new SerializeWriter(null, JSON.DEFAULT_GENERATE_FEATURE, SerializerFeature.WriteClassName);
+            try {
+                new JSONSerializer(writer).write(t);
+                writer.writeToEx(json, DEFAULT_CHARSET);
+            } finally {
+                writer.close();
+            }
+            if (compressThreshold > 0 && json.size() > compressThreshold) {
+                byte[] compressed = compress(buffers, json.buffer(), json.size());
+                if (compressed != null) {
+                    return compressed;
+                }
+            }
+            return json.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Cannot serialize", e);
+        } finally {
+            buffers.release();
+        }
     }
 
     @Override
@@ -30,7 +85,133 @@ public class FastJson2JsonRedisSerializer<T> implements RedisSerializer<T> {
         if (bytes == null || bytes.length <= 0) {
             return null;
         }
-        String str = new String(bytes, DEFAULT_CHARSET);
-        return (T) JSON.parseObject(str, clazz);
+        if (bytes[0] != COMPRESSED_HEADER) {
+            return (T) JSON.parseObject(bytes, 0, bytes.length, DEFAULT_CHARSET, clazz);
+        }
+        Buffers buffers = BUFFERS.get();
+        try {
+            int length = decompress(buffers, bytes);
+            return (T) JSON.parseObject(buffers.inflated, 0, length, DEFAULT_CHARSET, clazz);
+        } finally {
+            buffers.release();
+        }
+    }
+
+    /**
+     * 压缩到线程复用的缓冲区，压缩后没有变小时返回null
+     */
+    private static byte[] compress(Buffers buffers, byte[] json, int length) {
+        Deflater deflater = buffers.deflater;
+        PooledOutputStream out = buffers.compressed;
+        deflater.reset();
+        deflater.setInput(json, 0, length);
+        deflater.finish();
+        out.write(COMPRESSED_HEADER);
+        out.write(length >>> 24);
+        out.write(length >>> 16);
+        out.write(length >>> 8);
+        out.write(length);
+        while (!deflater.finished()) {
+            out.ensureRemaining(4096);
+            out.advance(deflater.deflate(out.buffer(), out.size(), out.remaining()));
+        }
+        return out.size() < length ? out.toByteArray() : null;
+    }
+
+    /**
+     * 解压到线程复用的缓冲区
+     * @return 解压后的字节数
+     */
+    private static int decompress(Buffers buffers, byte[] bytes) {
+        if (bytes.length < HEADER_LENGTH) {
+            throw new SerializationException("Compressed payload is too short: " + bytes.length);
+        }
+        int length = (bytes[1] & 0xFF) << 24 | (bytes[2] & 0xFF) << 16 | (bytes[3] & 0xFF) << 8 | (bytes[4] & 0xFF);
+        if (buffers.inflated.length < length) {
+            buffers.inflated = new byte[length];
+        }
+        Inflater inflater = buffers.inflater;
+        inflater.reset();
+        inflater.setInput(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+        try {
+            int offset = 0;
+            while (offset < length && !inflater.finished()) {
+                int n = inflater.inflate(buffers.inflated, offset, length - offset);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                offset += n;
+            }
+            if (offset != length) {
+                throw new SerializationException("Compressed payload is truncated");
+            }
+            return length;
+        } catch (DataFormatException e) {
+            throw new SerializationException("Cannot decompress payload", e);
+        }
+    }
+
+    /**
+     * 单个线程复用的编码、压缩和解压缓冲区
+     */
+    private static final class Buffers {
+
+        private final PooledOutputStream json = new PooledOutputStream();
+
+        private final PooledOutputStream compressed = new PooledOutputStream();
+
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+        private final Inflater inflater = new Inflater();
+
+        private byte[] inflated = new byte[1024];
+
+        private void release() {
+            json.release();
+            compressed.release();
+            if (inflated.length > MAX_RETAINED_BUFFER) {
+                inflated = new byte[1024];
+            }
+        }
+    }
+
+    /**
+     * 可直接访问内部数组的输出流
+     */
+    private static final class PooledOutputStream extends ByteArrayOutputStream {
+
+        private PooledOutputStream() {
+            super(1024);
+        }
+
+        private byte[] buffer() {
+            return buf;
+        }
+
+        private int remaining() {
+            return buf.length - count;
+        }
+
+        private void ensureRemaining(int n) {
+            if (buf.length - count < n) {
+                byte[] grown = new byte[Math.max(buf.length * 2, count + n)];
+                System.arraycopy(buf, 0, grown, 0, count);
+                buf = grown;
+            }
+        }
+
+        private void advance(int n) {
+            count += n;
+        }
+
+        /**
+         * 重置写入位置，过大的数组不再保留
+         */
+        private void release() {
+            count = 0;
+            if (buf.length > MAX_RETAINED_BUFFER) {
+                buf = new byte[1024];
+            }
+        }
     }
-}
\ No newline at end of file
+}
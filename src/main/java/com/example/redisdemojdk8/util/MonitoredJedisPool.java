@@ -0,0 +1,96 @@
+package com.example.redisdemojdk8.util;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.exceptions.JedisExhaustedPoolException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @description: 带监控的JedisPool
+ * <p>统计getResource的等待时间分布，并对连接池耗尽（等待超过maxWait仍借不到连接）和其他借用失败计数；
+ * 活跃、空闲和等待中的连接数直接取自commons-pool。</p>
+ * @author Kent HAN
+ * @date 2023/12/26 14:30
+ */
+public class MonitoredJedisPool extends JedisPool {
+
+    private final int maxTotal;
+
+    private final Recorder borrowRecorder = RedisCommandStats.newRecorder();
+
+    private final Histogram borrowTotal = RedisCommandStats.newHistogram();
+
+    private final LongAdder exhausted = new LongAdder();
+
+    private final LongAdder borrowFailures = new LongAdder();
+
+    private Histogram borrowInterval;
+
+    /**
+     * @param poolConfig 连接池配置
+     * @param host 主机
+     * @param port 端口
+     * @param timeout 连接和读写超时（毫秒）
+     * @param password 密码
+     * @param database 数据库
+     */
+    public MonitoredJedisPool(JedisPoolConfig poolConfig, String host, int port, int timeout, String password,
+                              int database) {
+        super(poolConfig, host, port, timeout, password, database);
+        this.maxTotal = poolConfig.getMaxTotal();
+    }
+
+    @Override
+    public Jedis getResource() {
+        long start = System.nanoTime();
+        try {
+            Jedis jedis = super.getResource();
+            borrowRecorder.recordValue(System.nanoTime() - start);
+            return jedis;
+        } catch (JedisExhaustedPoolException e) {
+            exhausted.increment();
+            throw e;
+        } catch (RuntimeException e) {
+            borrowFailures.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * @description: 连接池使用情况和借用等待时间
+     * @return 统计结果
+     */
+    public synchronized Map<String, Object> stats() {
+        borrowInterval = borrowRecorder.getIntervalHistogram(borrowInterval);
+        borrowTotal.add(borrowInterval);
+        Map<String, Object> result = new LinkedHashMap<>();
+        int active = getNumActive();
+        result.put("maxTotal", maxTotal);
+        result.put("active", active);
+        result.put("idle", getNumIdle());
+        result.put("waiters", getNumWaiters());
+        result.put("utilization", maxTotal > 0 && active > 0 ? (double) active / maxTotal : 0.0);
+        result.put("exhausted", exhausted.sum());
+        result.put("borrowFailures", borrowFailures.sum());
+        result.put("meanBorrowWaitMillis", getMeanBorrowWaitTimeMillis());
+        result.put("maxBorrowWaitMillis", getMaxBorrowWaitTimeMillis());
+        result.put("borrowWait", RedisCommandStats.percentiles(borrowTotal));
+        return result;
+    }
+
+    /**
+     * @description: 清空借用等待时间和计数，连接数不受影响
+     */
+    public synchronized void resetStats() {
+        borrowInterval = borrowRecorder.getIntervalHistogram(borrowInterval);
+        borrowTotal.reset();
+        exhausted.reset();
+        borrowFailures.reset();
+    }
+}
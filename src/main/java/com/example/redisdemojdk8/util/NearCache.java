@@ -0,0 +1,187 @@
+package com.example.redisdemojdk8.util;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * @description: 进程内近端缓存（L1），位于RedisUtils读取路径之前
+ * <p>只缓存指定前缀的Key，按容量和存活时间淘汰；写入和Redis的keyspace通知会使对应Key失效。
+ * 缓存的对象在调用方之间共享，调用方不应修改返回的对象。</p>
+ * @author Kent HAN
+ * @date 2023/12/19 10:05
+ */
+public class NearCache {
+
+    /**
+     * 超过容量时淘汰到容量的该比例
+     */
+    private static final double EVICT_TO_RATIO = 0.9;
+
+    private final String[] prefixes;
+
+    private final int maxSize;
+
+    private final long ttlNanos;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final ReentrantLock evictLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param prefixes 启用近端缓存的Key前缀，为空时不缓存任何Key
+     * @param maxSize 最大缓存Key数量
+     * @param ttlMillis 本地存活时间（毫秒），也是keyspace通知丢失时的最大不一致时间
+     */
+    public NearCache(Collection<String> prefixes, int maxSize, long ttlMillis) {
+        this.prefixes = prefixes.stream().filter(p -> p != null && !p.isEmpty()).toArray(String[]::new);
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    /**
+     * @description: 判断Key是否启用近端缓存
+     * @param key redis的Key
+     * @return boolean true:启用 false:不启用
+     */
+    public boolean isCacheable(String key) {
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @description: 启用前缀的Key的前缀列表
+     * @return 前缀数组的副本
+     */
+    public String[] getPrefixes() {
+        return prefixes.clone();
+    }
+
+    /**
+     * @description: 从近端缓存获取，未命中时通过loader从Redis加载并缓存
+     * <p>加载期间如果Key失效，加载结果不会写入缓存，避免缓存旧值</p>
+     * @param key redis的Key
+     * @param loader 从Redis加载的逻辑
+     * @return 缓存或加载的值
+     */
+    public <T> T get(String key, Function<String, T> loader) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.value != null && entry.expireAt - now > 0) {
+            hits.increment();
+            return (T) entry.value;
+        }
+        misses.increment();
+        Entry loading = new Entry(null, 0);
+        if (entry == null) {
+            entries.putIfAbsent(key, loading);
+        } else {
+            entries.replace(key, entry, loading);
+        }
+        T value = loader.apply(key);
+        if (value == null) {
+            entries.remove(key, loading);
+        } else if (entries.replace(key, loading, new Entry(value, System.nanoTime() + ttlNanos))) {
+            evictIfNecessary();
+        }
+        return value;
+    }
+
+    /**
+     * @description: 使Key失效
+     * @param key redis的Key
+     */
+    public void invalidate(String key) {
+        if (entries.remove(key) != null) {
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * @description: 清空近端缓存
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 超过容量时先淘汰过期Key，仍超过则按遍历顺序淘汰，同一时间只有一个线程执行
+     */
+    private void evictIfNecessary() {
+        if (entries.size() <= maxSize || !evictLock.tryLock()) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            int target = (int) (maxSize * EVICT_TO_RATIO);
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next().getValue();
+                if (entry.value != null && entry.expireAt - now <= 0) {
+                    iterator.remove();
+                    evictions.increment();
+                }
+            }
+            iterator = entries.entrySet().iterator();
+            while (entries.size() > target && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.increment();
+            }
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    /**
+     * 缓存条目，value为null时表示正在加载
+     */
+    private static final class Entry {
+
+        private final Object value;
+
+        private final long expireAt;
+
+        private Entry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
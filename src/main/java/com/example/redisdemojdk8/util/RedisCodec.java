@@ -0,0 +1,32 @@
+package com.example.redisdemojdk8.util;
+
+/**
+ * @description: Redis值编解码器
+ * <p>编码结果写入Redis时由 {@link CodecRedisSerializer} 加上头字节和编解码器ID，读取时按ID选择编解码器</p>
+ * @author Kent HAN
+ * @date 2023/12/21 9:20
+ */
+public interface RedisCodec {
+
+    /**
+     * 编解码器ID，写入值中用于识别，注册后不能修改
+     * @return 1~255
+     */
+    int id();
+
+    /**
+     * 编码
+     * @param value 非null的值
+     * @return 编码后的字节
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 解码
+     * @param bytes 包含编码数据的数组
+     * @param offset 编码数据的起始位置
+     * @param length 编码数据的长度
+     * @return 解码后的值
+     */
+    Object decode(byte[] bytes, int offset, int length);
+}
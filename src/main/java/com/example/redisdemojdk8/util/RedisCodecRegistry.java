@@ -0,0 +1,125 @@
+package com.example.redisdemojdk8.util;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @description: 编解码器注册表，按值类型或Key前缀选择编解码器
+ * <p>没有匹配的类型和前缀时使用原有的序列化方式，写入的数据与引入注册表之前一致；
+ * 读取时按值中记录的编解码器ID解码，新旧格式的数据可以混合存在。</p>
+ * @author Kent HAN
+ * @date 2023/12/21 9:50
+ */
+public class RedisCodecRegistry {
+
+    /**
+     * FastJson编解码器ID
+     */
+    public static final int FASTJSON_CODEC_ID = 1;
+
+    /**
+     * Jackson编解码器ID
+     */
+    public static final int JACKSON_CODEC_ID = 2;
+
+    private final RedisCodec[] codecs = new RedisCodec[256];
+
+    private final Map<Class<?>, RedisCodec> typeCodecs = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, Optional<RedisCodec>> resolvedTypeCodecs = new ConcurrentHashMap<>();
+
+    private volatile String[] prefixes = new String[0];
+
+    private final Map<String, RedisCodec> prefixCodecs = new ConcurrentHashMap<>();
+
+    /**
+     * @description: 注册编解码器
+     * @param codec 编解码器，ID不能重复
+     * @return this
+     */
+    public synchronized RedisCodecRegistry register(RedisCodec codec) {
+        int id = codec.id();
+        if (id < 1 || id > 255) {
+            throw new IllegalArgumentException("codec id must be between 1 and 255: " + id);
+        }
+        if (codecs[id] != null && codecs[id] != codec) {
+            throw new IllegalStateException("codec id already registered: " + id);
+        }
+        codecs[id] = codec;
+        return this;
+    }
+
+    /**
+     * @description: 指定值类型使用的编解码器，子类同样生效
+     * @param type 值类型
+     * @param codecId 已注册的编解码器ID
+     * @return this
+     */
+    public synchronized RedisCodecRegistry mapType(Class<?> type, int codecId) {
+        typeCodecs.put(type, codec(codecId));
+        resolvedTypeCodecs.clear();
+        return this;
+    }
+
+    /**
+     * @description: 指定Key前缀使用的编解码器，前缀优先于值类型
+     * @param prefix Key前缀
+     * @param codecId 已注册的编解码器ID
+     * @return this
+     */
+    public synchronized RedisCodecRegistry mapPrefix(String prefix, int codecId) {
+        prefixCodecs.put(prefix, codec(codecId));
+        prefixes = prefixCodecs.keySet().stream()
+                .sorted((a, b) -> b.length() - a.length())
+                .toArray(String[]::new);
+        return this;
+    }
+
+    /**
+     * @description: 按ID获取编解码器
+     * @param codecId 编解码器ID
+     * @return 编解码器
+     */
+    public RedisCodec codec(int codecId) {
+        RedisCodec codec = codecId >= 0 && codecId < codecs.length ? codecs[codecId] : null;
+        if (codec == null) {
+            throw new IllegalArgumentException("codec not registered: " + codecId);
+        }
+        return codec;
+    }
+
+    /**
+     * @description: 值类型对应的编解码器
+     * @param type 值类型
+     * @return 编解码器，没有指定时返回null
+     */
+    public RedisCodec codecForType(Class<?> type) {
+        if (typeCodecs.isEmpty()) {
+            return null;
+        }
+        return resolvedTypeCodecs.computeIfAbsent(type, t -> {
+            for (Class<?> c = t; c != null; c = c.getSuperclass()) {
+                RedisCodec codec = typeCodecs.get(c);
+                if (codec != null) {
+                    return Optional.of(codec);
+                }
+            }
+            return Optional.empty();
+        }).orElse(null);
+    }
+
+    /**
+     * @description: Key前缀对应的编解码器，多个前缀匹配时取最长的
+     * @param key redis的Key
+     * @return 编解码器，没有指定时返回null
+     */
+    public RedisCodec codecForKey(String key) {
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return prefixCodecs.get(prefix);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.redisdemojdk8.util;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @description: 按操作统计的延迟直方图
+ * <p>调用线程只写入HdrHistogram的Recorder，不加锁；查询时把区间数据合并到累计直方图，
+ * 再计算p50/p99/p999。延迟以纳秒记录，输出为微秒。</p>
+ * @author Kent HAN
+ * @date 2023/12/26 14:00
+ */
+public class RedisCommandStats {
+
+    /**
+     * 直方图精度，3位有效数字
+     */
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final ConcurrentHashMap<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+    /**
+     * @description: 记录一次操作
+     * @param operation 操作名
+     * @param nanos 耗时（纳秒）
+     * @param failed 是否抛出异常
+     */
+    public void record(String operation, long nanos, boolean failed) {
+        OperationStats stats = operations.computeIfAbsent(operation, o -> new OperationStats());
+        stats.recorder.recordValue(Math.max(0, nanos));
+        if (failed) {
+            stats.errors.increment();
+        }
+    }
+
+    /**
+     * @description: 各操作的调用次数、错误数和延迟分位数，按操作名排序
+     * @return 操作名到统计结果的映射
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        operations.forEach((operation, stats) -> result.put(operation, stats.snapshot()));
+        return result;
+    }
+
+    /**
+     * @description: 清空统计
+     */
+    public void reset() {
+        operations.values().forEach(OperationStats::reset);
+    }
+
+    static Map<String, Object> percentiles(Histogram histogram) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", histogram.getTotalCount());
+        result.put("meanMicros", Math.round(histogram.getMean() / 1000));
+        result.put("p50Micros", micros(histogram.getValueAtPercentile(50)));
+        result.put("p99Micros", micros(histogram.getValueAtPercentile(99)));
+        result.put("p999Micros", micros(histogram.getValueAtPercentile(99.9)));
+        result.put("maxMicros", micros(histogram.getMaxValue()));
+        return result;
+    }
+
+    static Histogram newHistogram() {
+        return new Histogram(SIGNIFICANT_DIGITS);
+    }
+
+    static Recorder newRecorder() {
+        return new Recorder(SIGNIFICANT_DIGITS);
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static final class OperationStats {
+
+        private final Recorder recorder = newRecorder();
+
+        private final Histogram total = newHistogram();
+
+        private final LongAdder errors = new LongAdder();
+
+        private Histogram interval;
+
+        private synchronized Map<String, Object> snapshot() {
+            drain();
+            Map<String, Object> result = percentiles(total);
+            result.put("errors", errors.sum());
+            return result;
+        }
+
+        private synchronized void reset() {
+            drain();
+            total.reset();
+            errors.reset();
+        }
+
+        private void drain() {
+            interval = recorder.getIntervalHistogram(interval);
+            total.add(interval);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.example.redisdemojdk8.util;
+
+import com.alibaba.fastjson.JSON;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * @description: 对象与hash的字段级映射
+ * <p>对象的每个属性存为hash的一个字段：数字和布尔值存为字符串（可以直接HINCRBY），日期存为毫秒时间戳，
+ * 枚举存为名称，其他类型存为JSON；值为null的属性不存储。支持HMGET读取部分字段，以及只写入变化的字段。
+ * 写入后与 {@link RedisUtils} 的其他写操作一样使近端缓存中的Key失效。</p>
+ * @author Kent HAN
+ * @date 2023/12/22 9:40
+ */
+public class RedisHashMapper<T> {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final NearCache nearCache;
+
+    private final Class<T> type;
+
+    private final Constructor<T> constructor;
+
+    private final Map<String, Field> fields = new LinkedHashMap<>();
+
+    /**
+     * @param stringRedisTemplate 字段值为纯字符串的模板
+     * @param nearCache 写入后需要失效的近端缓存
+     * @param type 对象类型，需要有无参构造方法
+     */
+    public RedisHashMapper(StringRedisTemplate stringRedisTemplate, NearCache nearCache, Class<T> type) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.nearCache = nearCache;
+        this.type = type;
+        try {
+            this.constructor = type.getDeclaredConstructor();
+            this.constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type.getName() + " has no no-arg constructor", e);
+        }
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+                    field.setAccessible(true);
+                    fields.putIfAbsent(field.getName(), field);
+                }
+            }
+        }
+    }
+
+    /**
+     * @description: 保存对象的全部属性，值为null的属性删除对应字段，一次pipeline完成
+     * @param key redis的Key
+     * @param value 对象
+     */
+    public void save(String key, T value) {
+        Map<String, String> puts = new LinkedHashMap<>();
+        List<Object> removes = new ArrayList<>();
+        for (Map.Entry<String, Field> entry : fields.entrySet()) {
+            String encoded = encode(read(entry.getValue(), value));
+            if (encoded == null) {
+                removes.add(entry.getKey());
+            } else {
+                puts.put(entry.getKey(), encoded);
+            }
+        }
+        write(key, puts, removes);
+    }
+
+    /**
+     * @description: 读取对象的全部属性
+     * @param key redis的Key
+     * @return 对象，Key不存在时返回null
+     */
+    public T load(String key) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(key);
+        if (entries.isEmpty()) {
+            return null;
+        }
+        T value = newInstance();
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            Field field = fields.get((String) entry.getKey());
+            if (field != null) {
+                set(field, value, decode(field, (String) entry.getValue()));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @description: 通过HMGET只读取指定属性，其他属性保持默认值
+     * @param key redis的Key
+     * @param fieldNames 属性名
+     * @return 对象，指定的字段都不存在时返回null
+     */
+    public T load(String key, String... fieldNames) {
+        List<Object> names = new ArrayList<>(fieldNames.length);
+        for (String name : fieldNames) {
+            names.add(field(name).getName());
+        }
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(key, names);
+        T value = null;
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (values.get(i) != null) {
+                if (value == null) {
+                    value = newInstance();
+                }
+                Field field = field(fieldNames[i]);
+                set(field, value, decode(field, (String) values.get(i)));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @description: 只写入新旧对象之间变化的属性
+     * @param key redis的Key
+     * @param previous 修改前的对象
+     * @param current 修改后的对象
+     * @return 变化的属性数量
+     */
+    public int update(String key, T previous, T current) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        for (Map.Entry<String, Field> entry : fields.entrySet()) {
+            Object after = read(entry.getValue(), current);
+            if (!Objects.equals(read(entry.getValue(), previous), after)) {
+                changes.put(entry.getKey(), after);
+            }
+        }
+        update(key, changes);
+        return changes.size();
+    }
+
+    /**
+     * @description: 只写入指定属性，值为null的属性删除对应字段
+     * @param key redis的Key
+     * @param changes 属性名和新值
+     */
+    public void update(String key, Map<String, ?> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        Map<String, String> puts = new LinkedHashMap<>();
+        List<Object> removes = new ArrayList<>();
+        for (Map.Entry<String, ?> entry : changes.entrySet()) {
+            field(entry.getKey());
+            String encoded = encode(entry.getValue());
+            if (encoded == null) {
+                removes.add(entry.getKey());
+            } else {
+                puts.put(entry.getKey(), encoded);
+            }
+        }
+        write(key, puts, removes);
+    }
+
+    /**
+     * @description: 整数属性原子自增（HINCRBY）
+     * @param key redis的Key
+     * @param fieldName 属性名
+     * @param delta 自增步长
+     * @return 自增后的值
+     */
+    public long increment(String key, String fieldName, long delta) {
+        long value = stringRedisTemplate.opsForHash().increment(key, field(fieldName).getName(), delta);
+        nearCache.invalidate(key);
+        return value;
+    }
+
+    /**
+     * @description: 浮点数属性原子自增（HINCRBYFLOAT）
+     * @param key redis的Key
+     * @param fieldName 属性名
+     * @param delta 自增步长
+     * @return 自增后的值
+     */
+    public double increment(String key, String fieldName, double delta) {
+        double value = stringRedisTemplate.opsForHash().increment(key, field(fieldName).getName(), delta);
+        nearCache.invalidate(key);
+        return value;
+    }
+
+    /**
+     * @description: 映射的属性名
+     * @return 属性名集合
+     */
+    public Collection<String> fieldNames() {
+        return Collections.unmodifiableCollection(fields.keySet());
+    }
+
+    private void write(String key, Map<String, String> puts, List<Object> removes) {
+        if (removes.isEmpty()) {
+            if (!puts.isEmpty()) {
+                stringRedisTemplate.opsForHash().putAll(key, puts);
+                nearCache.invalidate(key);
+            }
+            return;
+        }
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                if (!puts.isEmpty()) {
+                    ops.opsForHash().putAll(key, puts);
+                }
+                ops.opsForHash().delete(key, removes.toArray());
+                return null;
+            }
+        });
+        nearCache.invalidate(key);
+    }
+
+    private Field field(String name) {
+        Field field = fields.get(name);
+        if (field == null) {
+            throw new IllegalArgumentException(type.getName() + " has no field " + name
+                    + ", fields: " + Arrays.toString(fields.keySet().toArray()));
+        }
+        return field;
+    }
+
+    private T newInstance() {
+        try {
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create " + type.getName(), e);
+        }
+    }
+
+    private static Object read(Field field, Object target) {
+        try {
+            return field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void set(Field field, Object target, Object value) {
+        try {
+            field.set(target, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 属性值编码为字段值
+     */
+    private static String encode(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof String) {
+            return (String) value;
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return value.toString();
+        }
+        if (value instanceof Date) {
+            return Long.toString(((Date) value).getTime());
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        return JSON.toJSONString(value);
+    }
+
+    /**
+     * 字段值解码为属性值
+     */
+    private static Object decode(Field field, String text) {
+        Class<?> c = field.getType();
+        if (c == String.class) {
+            return text;
+        } else if (c == int.class || c == Integer.class) {
+            return Integer.valueOf(text);
+        } else if (c == long.class || c == Long.class) {
+            return Long.valueOf(text);
+        } else if (c == double.class || c == Double.class) {
+            return Double.valueOf(text);
+        } else if (c == float.class || c == Float.class) {
+            return Float.valueOf(text);
+        } else if (c == short.class || c == Short.class) {
+            return Short.valueOf(text);
+        } else if (c == byte.class || c == Byte.class) {
+            return Byte.valueOf(text);
+        } else if (c == boolean.class || c == Boolean.class) {
+            return Boolean.valueOf(text);
+        } else if (c == char.class || c == Character.class) {
+            return text.charAt(0);
+        } else if (c == BigDecimal.class) {
+            return new BigDecimal(text);
+        } else if (c == Date.class) {
+            return new Date(Long.parseLong(text));
+        } else if (c.isEnum()) {
+            return Enum.valueOf(c.asSubclass(Enum.class), text);
+        }
+        return JSON.parseObject(text, field.getGenericType());
+    }
+}
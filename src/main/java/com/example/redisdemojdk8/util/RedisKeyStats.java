@@ -0,0 +1,440 @@
+package com.example.redisdemojdk8.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @description: 热Key和大Key统计
+ * <p>按采样率记录访问，热Key使用Space-Saving算法维护近似Top-K，计数已按采样率放大。
+ * Key按哈希分到多个分段，每个分段单独加锁，计数按桶组织，计数加1和替换最小Key都是O(1)；
+ * 同一个Key只会进入一个分段，生成报告时直接合并各分段的结果。
+ * 采样到的写入和读取按模板已经序列化好的字节数统计值大小，不会额外序列化；按Key前缀汇总，并用小顶堆保留最大的若干个Key。</p>
+ * @author Kent HAN
+ * @date 2023/12/20 9:30
+ */
+public class RedisKeyStats {
+
+    /**
+     * 最多统计的前缀数量，超过后归入OTHER_PREFIX
+     */
+    private static final int MAX_PREFIXES = 1000;
+
+    private static final String OTHER_PREFIX = "*";
+
+    private final boolean enabled;
+
+    private final int sampleRate;
+
+    private final int capacity;
+
+    private final int largestCapacity;
+
+    /**
+     * 热Key统计的分段数
+     */
+    private static final int HOT_KEY_STRIPES = 16;
+
+    /**
+     * Space-Saving分段，按Key哈希选择
+     */
+    private final SpaceSaving[] hotKeyStripes;
+
+    /**
+     * 最大的Key，堆顶是其中最小的一个；与largestIndex一起由largestKeys加锁保护
+     */
+    private final PriorityQueue<KeySize> largestKeys = new PriorityQueue<>(Comparator.comparingLong(k -> k.size));
+
+    private final Map<String, KeySize> largestIndex = new HashMap<>();
+
+    /**
+     * 最大Key已满时堆顶的字节数，不超过该值的记录无需加锁
+     */
+    private volatile long largestThreshold = -1;
+
+    private final ConcurrentHashMap<String, PrefixSize> prefixSizes = new ConcurrentHashMap<>();
+
+    /**
+     * @param enabled 是否启用
+     * @param sampleRate 采样率，每sampleRate次访问记录一次
+     * @param capacity 热Key监控的Key数量
+     * @param largestCapacity 保留的最大Key数量
+     */
+    public RedisKeyStats(boolean enabled, int sampleRate, int capacity, int largestCapacity) {
+        this.enabled = enabled;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.capacity = capacity;
+        this.largestCapacity = largestCapacity;
+        int stripes = Math.max(1, Math.min(HOT_KEY_STRIPES, capacity));
+        this.hotKeyStripes = new SpaceSaving[stripes];
+        for (int i = 0; i < stripes; i++) {
+            hotKeyStripes[i] = new SpaceSaving((capacity + stripes - 1) / stripes);
+        }
+    }
+
+    /**
+     * @description: 记录一次Key访问
+     * @param key redis的Key
+     */
+    public void recordAccess(String key) {
+        if (sampled()) {
+            recordSampledAccess(key);
+        }
+    }
+
+    /**
+     * @description: 记录一次带值的Key访问，采样到时统计值的字节数
+     * @param key redis的Key
+     * @param raw 读取或写入Redis的原始字节，为null时只记录访问
+     */
+    public void recordValue(String key, byte[] raw) {
+        if (!sampled()) {
+            return;
+        }
+        recordSampledAccess(key);
+        if (raw != null) {
+            recordSize(key, raw.length);
+        }
+    }
+
+    /**
+     * @description: 记录值序列化后的大小，不采样
+     * @param key redis的Key
+     * @param size 字节数
+     */
+    public void recordSize(String key, long size) {
+        if (!enabled) {
+            return;
+        }
+        String prefix = prefixOf(key);
+        PrefixSize stats = prefixSizes.get(prefix);
+        if (stats == null) {
+            stats = prefixSizes.size() < MAX_PREFIXES
+                    ? prefixSizes.computeIfAbsent(prefix, p -> new PrefixSize())
+                    : prefixSizes.computeIfAbsent(OTHER_PREFIX, p -> new PrefixSize());
+        }
+        stats.record(key, size);
+        if (size <= largestThreshold) {
+            return;
+        }
+        synchronized (largestKeys) {
+            KeySize existing = largestIndex.get(key);
+            if (existing != null) {
+                if (existing.size < size) {
+                    // 已在堆中的Key变大，重新入堆
+                    largestKeys.remove(existing);
+                    existing.size = size;
+                    largestKeys.add(existing);
+                }
+            } else if (largestKeys.size() < largestCapacity) {
+                KeySize entry = new KeySize(key, size);
+                largestKeys.add(entry);
+                largestIndex.put(key, entry);
+            } else if (largestKeys.peek().size < size) {
+                largestIndex.remove(largestKeys.poll().key);
+                KeySize entry = new KeySize(key, size);
+                largestKeys.add(entry);
+                largestIndex.put(key, entry);
+            }
+            largestThreshold = largestKeys.size() < largestCapacity ? -1 : largestKeys.peek().size;
+        }
+    }
+
+    /**
+     * @description: 访问最多的Key
+     * @param limit 返回数量
+     * @return 按估算访问次数倒序排列，count为估算次数，error为最大高估值
+     */
+    public List<Map<String, Object>> hotKeys(int limit) {
+        List<Counter> snapshot = new ArrayList<>(capacity);
+        for (SpaceSaving stripe : hotKeyStripes) {
+            stripe.copyTo(snapshot);
+        }
+        snapshot.sort(Comparator.comparingLong((Counter c) -> c.count).reversed());
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Counter counter : snapshot.subList(0, Math.min(limit, snapshot.size()))) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("key", counter.key);
+            item.put("count", counter.count * sampleRate);
+            item.put("error", counter.error * sampleRate);
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * @description: 序列化后最大的Key
+     * @param limit 返回数量
+     * @return 按字节数倒序排列
+     */
+    public List<Map<String, Object>> largestKeys(int limit) {
+        List<Map<String, Object>> snapshot = new ArrayList<>();
+        synchronized (largestKeys) {
+            for (KeySize entry : largestKeys) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("key", entry.key);
+                item.put("bytes", entry.size);
+                snapshot.add(item);
+            }
+        }
+        snapshot.sort(Comparator.comparingLong((Map<String, Object> m) -> (Long) m.get("bytes")).reversed());
+        return new ArrayList<>(snapshot.subList(0, Math.min(limit, snapshot.size())));
+    }
+
+    /**
+     * @description: 按前缀统计的值大小
+     * @return 按平均字节数倒序排列
+     */
+    public List<Map<String, Object>> prefixSizes() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        prefixSizes.forEach((prefix, stats) -> {
+            long samples = stats.samples.sum();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("prefix", prefix);
+            item.put("samples", samples);
+            item.put("avgBytes", samples == 0 ? 0 : stats.totalBytes.sum() / samples);
+            item.put("maxBytes", stats.maxBytes.get());
+            item.put("maxKey", stats.maxKey);
+            result.add(item);
+        });
+        result.sort(Comparator.comparingLong((Map<String, Object> m) -> (Long) m.get("avgBytes")).reversed());
+        return result;
+    }
+
+    /**
+     * @description: 清空统计
+     */
+    public void reset() {
+        for (SpaceSaving stripe : hotKeyStripes) {
+            stripe.clear();
+        }
+        synchronized (largestKeys) {
+            largestKeys.clear();
+            largestIndex.clear();
+            largestThreshold = -1;
+        }
+        prefixSizes.clear();
+    }
+
+    /**
+     * Key前缀：最后一个':'之前的部分，没有':'时取最后一个'_'之前的部分
+     */
+    static String prefixOf(String key) {
+        int index = key.lastIndexOf(':');
+        if (index < 0) {
+            index = key.lastIndexOf('_');
+        }
+        return index < 0 ? key : key.substring(0, index + 1);
+    }
+
+    private boolean sampled() {
+        return enabled && (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0);
+    }
+
+    private void recordSampledAccess(String key) {
+        int hash = key.hashCode();
+        hotKeyStripes[((hash ^ (hash >>> 16)) & 0x7FFFFFFF) % hotKeyStripes.length].record(key);
+    }
+
+    /**
+     * 热Key报告中的一项
+     */
+    private static final class Counter {
+
+        private final String key;
+
+        private final long count;
+
+        private final long error;
+
+        private Counter(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 一个分段的Space-Saving（Stream-Summary结构）
+     * <p>计数相同的Key挂在同一个桶上，桶按计数升序组成链表。已监控的Key计数加1时移到下一个桶；
+     * 未监控且已满时取计数最小的桶中任意一个Key替换，继承其计数作为误差。两种操作都不需要扫描。</p>
+     */
+    private static final class SpaceSaving {
+
+        private final int capacity;
+
+        private final Map<String, Node> nodes = new HashMap<>();
+
+        /**
+         * 计数最小的桶
+         */
+        private Bucket min;
+
+        private SpaceSaving(int capacity) {
+            this.capacity = Math.max(1, capacity);
+        }
+
+        private synchronized void record(String key) {
+            Node node = nodes.get(key);
+            if (node != null) {
+                increment(node);
+                return;
+            }
+            if (nodes.size() < capacity) {
+                node = new Node(key, 0);
+                if (min == null || min.count != 1) {
+                    Bucket bucket = new Bucket(1);
+                    bucket.next = min;
+                    if (min != null) {
+                        min.prev = bucket;
+                    }
+                    min = bucket;
+                }
+                min.add(node);
+                nodes.put(key, node);
+                return;
+            }
+            Node evicted = min.head;
+            nodes.remove(evicted.key);
+            evicted.key = key;
+            evicted.error = min.count;
+            nodes.put(key, evicted);
+            increment(evicted);
+        }
+
+        private void increment(Node node) {
+            Bucket bucket = node.bucket;
+            Bucket next = bucket.next;
+            if (next == null || next.count != bucket.count + 1) {
+                next = new Bucket(bucket.count + 1);
+                next.prev = bucket;
+                next.next = bucket.next;
+                if (bucket.next != null) {
+                    bucket.next.prev = next;
+                }
+                bucket.next = next;
+            }
+            bucket.remove(node);
+            next.add(node);
+            if (bucket.head == null) {
+                // 空桶从链表中摘除
+                if (bucket.prev != null) {
+                    bucket.prev.next = bucket.next;
+                } else {
+                    min = bucket.next;
+                }
+                bucket.next.prev = bucket.prev;
+            }
+        }
+
+        private synchronized void copyTo(List<Counter> result) {
+            for (Node node : nodes.values()) {
+                result.add(new Counter(node.key, node.bucket.count, node.error));
+            }
+        }
+
+        private synchronized void clear() {
+            nodes.clear();
+            min = null;
+        }
+    }
+
+    private static final class Bucket {
+
+        private final long count;
+
+        private Bucket prev;
+
+        private Bucket next;
+
+        private Node head;
+
+        private Bucket(long count) {
+            this.count = count;
+        }
+
+        private void add(Node node) {
+            node.bucket = this;
+            node.prev = null;
+            node.next = head;
+            if (head != null) {
+                head.prev = node;
+            }
+            head = node;
+        }
+
+        private void remove(Node node) {
+            if (node.prev != null) {
+                node.prev.next = node.next;
+            } else {
+                head = node.next;
+            }
+            if (node.next != null) {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+    private static final class Node {
+
+        private String key;
+
+        private long error;
+
+        private Bucket bucket;
+
+        private Node prev;
+
+        private Node next;
+
+        private Node(String key, long error) {
+            this.key = key;
+            this.error = error;
+        }
+    }
+
+    private static final class KeySize {
+
+        private final String key;
+
+        private long size;
+
+        private KeySize(String key, long size) {
+            this.key = key;
+            this.size = size;
+        }
+    }
+
+    private static final class PrefixSize {
+
+        private final LongAdder samples = new LongAdder();
+
+        private final LongAdder totalBytes = new LongAdder();
+
+        private final AtomicLong maxBytes = new AtomicLong();
+
+        private volatile String maxKey;
+
+        private void record(String key, long size) {
+            samples.increment();
+            totalBytes.add(size);
+            long max;
+            while (size > (max = maxBytes.get())) {
+                if (maxBytes.compareAndSet(max, size)) {
+                    maxKey = key;
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -1,18 +1,39 @@
 package com.example.redisdemojdk8.util;
 
 import com.example.redisdemojdk8.constant.Constant;
+import com.example.redisdemojdk8.service.LuaDemo;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.ConvertingCursor;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
-import org.springframework.data.redis.support.atomic.RedisAtomicLong;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * @description: redis工具类
@@ -23,12 +44,78 @@ import java.util.concurrent.TimeUnit;
 @Component
 public class RedisUtils {
 
+    /**
+     * 批量操作默认每批最大Key数量
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * SCAN命令默认COUNT提示值
+     */
+    public static final long DEFAULT_SCAN_COUNT = 1000;
+
+    /**
+     * 按前缀清理时每个pipeline包含的UNLINK批次数量
+     */
+    private static final int PURGE_PIPELINE_DEPTH = 10;
+
+    /**
+     * 写入hash字段并设置过期时间的脚本
+     */
+    private static final String HASH_PUT_EXPIRE_SCRIPT = "hash_put_expire";
+
+    /**
+     * 添加set成员并设置过期时间的脚本
+     */
+    private static final String SET_ADD_EXPIRE_SCRIPT = "set_add_expire";
+
+    /**
+     * 向list插入数据并设置过期时间的脚本
+     */
+    private static final String LIST_PUSH_EXPIRE_SCRIPT = "list_push_expire";
+
+    /**
+     * 计数器自增并设置过期时间点的脚本
+     */
+    private static final String INCR_EXPIRE_SCRIPT = "incr_expire";
+
+    /**
+     * 批量计数器自增并设置过期时间点的脚本
+     */
+    private static final String INCR_EXPIRE_BATCH_SCRIPT = "incr_expire_batch";
+
     /**
      * 注入redisTemplate
      */
     @Resource
     private RedisTemplate<String, Object> redisTemplate;
 
+    /**
+     * 进程内近端缓存，只对启用前缀的Key生效
+     */
+    @Resource
+    private NearCache nearCache;
+
+    /**
+     * 热Key和大Key统计
+     */
+    @Resource
+    private RedisKeyStats keyStats;
+
+    /**
+     * 字段值为纯字符串的模板，用于对象与hash的字段级映射
+     */
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * Lua脚本注册表，带过期时间的写入和计数器脚本通过它执行
+     */
+    @Resource
+    private LuaDemo luaDemo;
+
+    private final Map<Class<?>, RedisHashMapper<?>> hashMappers = new ConcurrentHashMap<>();
+
     /**
      * @description: 判断是否存在Key
      * @param key redis的Key
@@ -44,7 +131,8 @@ public class RedisUtils {
      * @param value 添加redis的value
      */
     public void set(String key, String value) {
-        redisTemplate.opsForValue().set(key, value);
+        setValue(key, value, 0);
+        nearCache.invalidate(key);
     }
 
     /**
@@ -53,38 +141,59 @@ public class RedisUtils {
      * @param object 添加redis的value
      */
     public void set(String key, Object object) {
-        redisTemplate.opsForValue().set(key, object);
+        setValue(key, object, 0);
+        nearCache.invalidate(key);
     }
 
     /**
      * @description: 添加带生命周期的对象
      * @param key redis的Key
      * @param object 添加redis的value
-     * @param seconds 失效时间
+     * @param seconds 失效时间，小于等于0时删除Key
      */
     public void setAndExpire(String key, Object object, int seconds) {
-        redisTemplate.opsForValue().set(key, object);
-        redisTemplate.expire(key, seconds, TimeUnit.SECONDS);
+        setAndExpire(key, object, seconds, 0);
+    }
+
+    /**
+     * @description: 添加带生命周期的对象，过期时间附加随机抖动，避免大量Key同时失效
+     * @param key redis的Key
+     * @param object 添加redis的value
+     * @param seconds 失效时间，小于等于0时删除Key
+     * @param jitterSeconds 最大随机抖动时间（秒），0表示不抖动
+     */
+    public void setAndExpire(String key, Object object, int seconds, int jitterSeconds) {
+        if (seconds <= 0) {
+            // 与原来先SET再EXPIRE的效果一致：非正的过期时间立即删除Key
+            del(key);
+            return;
+        }
+        setValue(key, object, ttlMillis(seconds, jitterSeconds));
+        nearCache.invalidate(key);
     }
 
     /**
      * @description: 添加带生命周期的对象
      * @param key redis的Key
      * @param value 添加redis的value
-     * @param seconds 失效时间
+     * @param seconds 失效时间，小于等于0时删除Key
      */
     public void setAndExpire(String key, String value, int seconds) {
-        redisTemplate.opsForValue().set(key, value);
-        redisTemplate.expire(key, seconds, TimeUnit.SECONDS);
+        setAndExpire(key, (Object) value, seconds, 0);
     }
 
     /**
-     * @description: 获取对象
+     * @description: 获取对象，启用近端缓存的Key优先从本地读取
      * @param key redis的Key
      * @return Object 返回对象
      */
     public Object get(String key) {
-        return redisTemplate.opsForValue().get(key);
+        if (nearCache.isCacheable(key)) {
+            // 命中近端缓存时没有读取Redis，只记录访问；未命中时按读到的字节统计大小
+            keyStats.recordAccess(key);
+            return nearCache.get(key, k -> getValue(k, false));
+        }
+        return getValue(key, true);
     }
 
     /**
@@ -94,7 +203,7 @@ public class RedisUtils {
      * @param value 存入的值
      */
     public void setHash(String key, String field, String value) {
-        redisTemplate.opsForHash().put(key, field, value);
+        setHashValue(key, field, value);
     }
 
     /**
@@ -104,7 +213,7 @@ public class RedisUtils {
      * @param value 存入的值
      */
     public void setHash(String key, String field, Object value) {
-        redisTemplate.opsForHash().put(key, field, value);
+        setHashValue(key, field, value);
     }
 
     /**
@@ -114,7 +223,11 @@ public class RedisUtils {
      * @return String 返回字符串
      */
     public String getHash(String key, String field) {
-        return (String)redisTemplate.opsForHash().get(key, field);
+        byte[] rawKey = rawKey(key);
+        byte[] rawField = rawHashKey(field);
+        byte[] raw = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.hGet(rawKey, rawField));
+        keyStats.recordValue(key, raw);
+        return raw == null ? null : (String) redisTemplate.getHashValueSerializer().deserialize(raw);
     }
 
     /**
@@ -123,7 +236,9 @@ public class RedisUtils {
      * @param field 字段值
      */
     public void delHashMap(String key, String field) {
+        keyStats.recordAccess(key);
         redisTemplate.boundHashOps(key).delete(field);
+        nearCache.invalidate(key);
     }
 
     /**
@@ -132,25 +247,109 @@ public class RedisUtils {
      * @param hashmap 存入的Map集合
      */
     public void setHashMap(String key, Map<String, Object> hashmap){
-        redisTemplate.opsForHash().putAll(key, hashmap);
+        keyStats.recordAccess(key);
+        byte[] rawKey = rawKey(key);
+        Map<byte[], byte[]> rawHash = serializeHash(key, hashmap);
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.hMSet(rawKey, rawHash);
+            return null;
+        });
+        nearCache.invalidate(key);
     }
     
     /**
-     * @description: 取出hash集合
+     * @description: 存入redis的hash并设置过期时间，一次脚本调用完成
+     * @param key redis的Key
+     * @param field 字段值
+     * @param value 存入的值
+     * @param seconds 失效时间，必须大于0
+     */
+    public void setHashAndExpire(String key, String field, Object value, int seconds) {
+        setHashMapAndExpire(key, Collections.singletonMap(field, value), seconds, 0);
+    }
+
+    /**
+     * @description: 存入hash集合并设置过期时间，一次脚本调用完成
+     * @param key redis的Key
+     * @param hashmap 存入的Map集合
+     * @param seconds 失效时间，必须大于0
+     */
+    public void setHashMapAndExpire(String key, Map<String, ?> hashmap, int seconds) {
+        setHashMapAndExpire(key, hashmap, seconds, 0);
+    }
+
+    /**
+     * @description: 存入hash集合并设置带随机抖动的过期时间，一次脚本调用完成
+     * @param key redis的Key
+     * @param hashmap 存入的Map集合
+     * @param seconds 失效时间，必须大于0
+     * @param jitterSeconds 最大随机抖动时间（秒），0表示不抖动
+     */
+    public void setHashMapAndExpire(String key, Map<String, ?> hashmap, int seconds, int jitterSeconds) {
+        keyStats.recordAccess(key);
+        List<byte[]> args = new ArrayList<>(hashmap.size() * 2 + 1);
+        args.add(longToBytes(ttlMillis(seconds, jitterSeconds)));
+        for (Map.Entry<String, ?> entry : hashmap.entrySet()) {
+            args.add(rawHashKey(entry.getKey()));
+            args.add(serializeHashValue(key, entry.getValue()));
+        }
+        executeScript(HASH_PUT_EXPIRE_SCRIPT, key, args);
+        nearCache.invalidate(key);
+    }
+
+    /**
+     * @description: 取出hash集合，启用近端缓存的Key优先从本地读取
      * @param key redis的Key
      * @return Map<Object, Object> 返回Map集合
      */
     public Map<Object, Object> getHashMap(String key) {
+        keyStats.recordAccess(key);
+        if (nearCache.isCacheable(key)) {
+            Map<Object, Object> cached = nearCache.get(key, k -> {
+                Map<Object, Object> entries = redisTemplate.opsForHash().entries(k);
+                return entries.isEmpty() ? null : entries;
+            });
+            return cached == null ? new LinkedHashMap<>() : new LinkedHashMap<>(cached);
+        }
         return redisTemplate.opsForHash().entries(key);
     }
 
+    /**
+     * @description: 获取对象与hash的字段级映射，每个属性存为一个hash字段
+     * @param type 对象类型，需要有无参构造方法
+     * @return RedisHashMapper
+     */
+    public <T> RedisHashMapper<T> hashMapper(Class<T> type) {
+        return (RedisHashMapper<T>) hashMappers.computeIfAbsent(type, t -> new RedisHashMapper<>(stringRedisTemplate, nearCache, t));
+    }
+
     /**
      * @description: 存入redis的Set
      * @param key redis的Key
      * @param object 对象
      */
     public void setSet(String key,Object object){
-        redisTemplate.opsForSet().add(key, object);
+        keyStats.recordAccess(key);
+        byte[] rawKey = rawKey(key);
+        byte[] rawValue = serializeValue(key, object);
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.sAdd(rawKey, rawValue));
+    }
+
+    /**
+     * @description: 存入redis的Set并设置过期时间，一次脚本调用完成
+     * @param key redis的Key
+     * @param values 添加的成员集合
+     * @param seconds 失效时间，必须大于0
+     * @param jitterSeconds 最大随机抖动时间（秒），0表示不抖动
+     */
+    public void setSetAndExpire(String key, Collection<?> values, int seconds, int jitterSeconds) {
+        keyStats.recordAccess(key);
+        List<byte[]> args = new ArrayList<>(values.size() + 1);
+        args.add(longToBytes(ttlMillis(seconds, jitterSeconds)));
+        for (Object value : values) {
+            args.add(serializeValue(key, value));
+        }
+        executeScript(SET_ADD_EXPIRE_SCRIPT, key, args);
     }
 
     /**
@@ -159,6 +358,7 @@ public class RedisUtils {
      * @return Set<Object> Set集合
      */
     public Set<Object> getSet(String key){
+        keyStats.recordAccess(key);
         return redisTemplate.opsForSet().members(key);
     }
 
@@ -169,7 +369,10 @@ public class RedisUtils {
      * @return 是否是set成员
      */
     public Boolean isSetMember(String key, Object value) {
-        return redisTemplate.opsForSet().isMember(key, value);
+        keyStats.recordAccess(key);
+        byte[] rawKey = rawKey(key);
+        byte[] rawValue = serializeValue(key, value);
+        return redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.sIsMember(rawKey, rawValue));
     }
 
     /**
@@ -207,7 +410,10 @@ public class RedisUtils {
      * @param object 添加的对象
      */
     public void tailPush(String key, Object object){
-        redisTemplate.opsForList().rightPush(key, object);
+        keyStats.recordAccess(key);
+        byte[] rawKey = rawKey(key);
+        byte[] rawValue = serializeValue(key, object);
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.rPush(rawKey, rawValue));
     }
 
     /**
@@ -216,7 +422,39 @@ public class RedisUtils {
      * @param object 添加的对象
      */
     public void headPush(String key,Object object){
-        redisTemplate.opsForList().leftPush(key, object);
+        keyStats.recordAccess(key);
+        byte[] rawKey = rawKey(key);
+        byte[] rawValue = serializeValue(key, object);
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.lPush(rawKey, rawValue));
+    }
+
+    /**
+     * @description: 在redis消息队列队尾插入数据并设置过期时间，一次脚本调用完成
+     * @param key redis的Key
+     * @param object 添加的对象
+     * @param seconds 失效时间，必须大于0
+     */
+    public void tailPushAndExpire(String key, Object object, int seconds) {
+        pushAndExpire(key, "R", object, seconds);
+    }
+
+    /**
+     * @description: 在redis消息队列对头插入数据并设置过期时间，一次脚本调用完成
+     * @param key redis的Key
+     * @param object 添加的对象
+     * @param seconds 失效时间，必须大于0
+     */
+    public void headPushAndExpire(String key, Object object, int seconds) {
+        pushAndExpire(key, "L", object, seconds);
+    }
+
+    private void pushAndExpire(String key, String direction, Object object, int seconds) {
+        keyStats.recordAccess(key);
+        List<byte[]> args = new ArrayList<>(3);
+        args.add(longToBytes(ttlMillis(seconds, 0)));
+        args.add(direction.getBytes(FastJson2JsonRedisSerializer.DEFAULT_CHARSET));
+        args.add(serializeValue(key, object));
+        executeScript(LIST_PUSH_EXPIRE_SCRIPT, key, args);
     }
 
     /**
@@ -225,6 +463,7 @@ public class RedisUtils {
      * @return Object 删除的对象
      */
     public Object tailPop(String key){
+        keyStats.recordAccess(key);
         return redisTemplate.opsForList().rightPop(key);
     }
 
@@ -234,24 +473,83 @@ public class RedisUtils {
      * @return Object 删除的对象
      */
     public Object headPop(String key){
+        keyStats.recordAccess(key);
         return redisTemplate.opsForList().leftPop(key);
     }
 
     /**
-     * @description: 删除redis的值
+     * @description: 删除redis的值，使用UNLINK在后台释放内存
      * @param key redis的Key
      */
     public void del(String key) {
-        if (hasKey(key)) {
-            redisTemplate.delete(key);
+        keyStats.recordAccess(key);
+        redisTemplate.unlink(key);
+        nearCache.invalidate(key);
+    }
+
+    /**
+     * @description: 批量删除redis的值，使用UNLINK按批次发送
+     * @param keys redis的Key集合
+     * @return 实际删除的Key数量
+     */
+    public long unlink(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return 0;
         }
+        long count = 0;
+        for (List<String> batch : partition(keys, DEFAULT_BATCH_SIZE)) {
+            Long removed = redisTemplate.unlink(batch);
+            count += removed == null ? 0 : removed;
+        }
+        keys.forEach(nearCache::invalidate);
+        return count;
     }
-    
+
+    /**
+     * @description: 清理本系统（Constant.KEY_PREFIX前缀）的全部Key
+     * @return 删除的Key数量
+     */
+    public long purgeNamespace() {
+        return purgeNamespace(Constant.KEY_PREFIX);
+    }
+
+    /**
+     * @description: 按前缀清理Key，SCAN遍历并通过pipeline批量UNLINK，不影响其他前缀的数据
+     * @param prefix Key前缀，不能为空
+     * @return 删除的Key数量
+     */
+    public long purgeNamespace(String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            throw new IllegalArgumentException("prefix must not be empty");
+        }
+        long[] count = new long[1];
+        scan(prefix + "*", DEFAULT_SCAN_COUNT, null, DEFAULT_BATCH_SIZE * PURGE_PIPELINE_DEPTH, keys -> {
+            List<Object> replies = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (List<String> batch : partition(keys, DEFAULT_BATCH_SIZE)) {
+                        ops.unlink(batch);
+                    }
+                    return null;
+                }
+            });
+            for (Object reply : replies) {
+                count[0] += reply instanceof Long ? (Long) reply : 0;
+            }
+        });
+        nearCache.clear();
+        return count[0];
+    }
+
     /**
      * @description: 清理redis缓存
+     * @deprecated 会清空整个库中其他系统的数据，使用 {@link #purgeNamespace()} 只清理本系统前缀的Key
      */
+    @Deprecated
     public void flushDB(){
         redisTemplate.getConnectionFactory().getConnection().flushDb();
+        nearCache.clear();
     }
 
     /**
@@ -260,7 +558,9 @@ public class RedisUtils {
      * @return 版本号
      * @author wanji
      * @date 2019/5/5 19:26
+     * @deprecated 每次调用都要格式化日期并访问Redis，使用 VersionGenerator#nextVersion(String)
     */
+    @Deprecated
     public String getVersion(String type) {
         String formatDate = DateUtils.dateToString(new Date(), DateStyle.YYYYMMDD);
         String key = Constant.KEY_PREFIX + type + formatDate;
@@ -283,21 +583,120 @@ public class RedisUtils {
      * @return 自增结果
      */
     public Long getIncr(String key, long liveTime) {
-        RedisAtomicLong entityIdCounter = new RedisAtomicLong(key, redisTemplate.getConnectionFactory());
-        Long increment = entityIdCounter.getAndIncrement();
+        long expireAt = liveTime > 0 ? System.currentTimeMillis() + liveTime : 0;
+        //返回自增前的值，首次调用返回0
+        return incrAndExpireAt(key, 1, expireAt) - 1;
+    }
+
+    /**
+     * @description: 计数器自增，Key没有过期时间时同时设置过期时间点，一次脚本调用完成
+     * @param key 计数器的Key
+     * @param delta 自增步长
+     * @param expireAtMillis 过期时间点（毫秒时间戳），小于等于0表示不设置
+     * @return 自增后的值
+     */
+    public long incrAndExpireAt(String key, long delta, long expireAtMillis) {
+        keyStats.recordAccess(key);
+        Long value = luaDemo.execute(INCR_EXPIRE_SCRIPT, Long.class, Collections.singletonList(key),
+                Long.toString(delta), Long.toString(expireAtMillis));
+        return value == null ? 0 : value;
+    }
 
-        if ((null == increment || increment.longValue() == 0) && liveTime > 0) {//初始设置过期时间
-            entityIdCounter.expire(liveTime, TimeUnit.MILLISECONDS);//单位毫秒
+    /**
+     * @description: 批量计数器自增并设置过期时间点，每批一次脚本调用
+     * @param keys 计数器的Key集合
+     * @param deltas 与keys一一对应的自增步长
+     * @param expireAtMillis 过期时间点（毫秒时间戳），小于等于0表示不设置
+     * @return 与keys顺序一致的自增后的值
+     */
+    public long[] incrAndExpireAt(List<String> keys, long[] deltas, long expireAtMillis) {
+        if (keys.size() != deltas.length) {
+            throw new IllegalArgumentException("keys and deltas must have the same size");
+        }
+        long[] result = new long[keys.size()];
+        int offset = 0;
+        for (List<String> batch : partition(keys, DEFAULT_BATCH_SIZE)) {
+            String[] args = new String[batch.size() + 1];
+            for (int i = 0; i < batch.size(); i++) {
+                args[i] = Long.toString(deltas[offset + i]);
+            }
+            args[batch.size()] = Long.toString(expireAtMillis);
+            List<?> values = luaDemo.execute(INCR_EXPIRE_BATCH_SCRIPT, List.class, batch, args);
+            for (int i = 0; i < batch.size(); i++) {
+                result[offset + i] = ((Number) values.get(i)).longValue();
+            }
+            offset += batch.size();
         }
-        return increment;
+        return result;
     }
 
     /**
      * 获取全部Redis的key
+     * <p>基于SCAN遍历，不会阻塞Redis，但结果仍全部加载到内存，大量Key时请使用{@link #scan}</p>
      * @return
+     * @deprecated 使用 {@link #scan(String, long, DataType, int, Consumer)} 分批处理
      */
+    @Deprecated
     public Set<String> keys() {
-        return redisTemplate.keys("*");
+        Set<String> keys = new HashSet<>();
+        scan("*", DEFAULT_SCAN_COUNT, null, DEFAULT_BATCH_SIZE, keys::addAll);
+        return keys;
+    }
+
+    /**
+     * @description: 基于SCAN的游标遍历，Key按需逐批从Redis拉取
+     * <p>返回的游标占用一个连接，使用完毕必须关闭</p>
+     * @param pattern 匹配模式，为空时使用Constant.KEY_PREFIX前缀
+     * @param count 每次SCAN的COUNT提示值
+     * @param type 类型过滤，为null时不过滤（需要Redis 6.0及以上）
+     * @return Cursor<String> Key游标
+     */
+    public Cursor<String> scan(String pattern, long count, DataType type) {
+        ScanOptions.ScanOptionsBuilder builder = ScanOptions.scanOptions()
+                .match(pattern == null || pattern.isEmpty() ? Constant.KEY_PREFIX + "*" : pattern)
+                .count(count);
+        if (type != null) {
+            builder.type(type);
+        }
+        ScanOptions options = builder.build();
+        RedisSerializer<String> keySerializer = (RedisSerializer<String>) redisTemplate.getKeySerializer();
+        return redisTemplate.executeWithStickyConnection(
+                connection -> new ConvertingCursor<>(connection.scan(options), keySerializer::deserialize));
+    }
+
+    /**
+     * @description: 遍历Constant.KEY_PREFIX前缀的Key，按批回调
+     * @param consumer 每批Key的处理逻辑
+     */
+    public void scan(Consumer<List<String>> consumer) {
+        scan(null, DEFAULT_SCAN_COUNT, null, DEFAULT_BATCH_SIZE, consumer);
+    }
+
+    /**
+     * @description: 基于SCAN分批遍历Key，客户端最多缓存bufferSize个Key
+     * @param pattern 匹配模式，为空时使用Constant.KEY_PREFIX前缀
+     * @param count 每次SCAN的COUNT提示值
+     * @param type 类型过滤，为null时不过滤（需要Redis 6.0及以上）
+     * @param bufferSize 每批回调的最大Key数量
+     * @param consumer 每批Key的处理逻辑，回调返回后批次列表会被复用
+     */
+    public void scan(String pattern, long count, DataType type, int bufferSize, Consumer<List<String>> consumer) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        }
+        List<String> buffer = new ArrayList<>(bufferSize);
+        try (Cursor<String> cursor = scan(pattern, count, type)) {
+            while (cursor.hasNext()) {
+                buffer.add(cursor.next());
+                if (buffer.size() >= bufferSize) {
+                    consumer.accept(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        if (!buffer.isEmpty()) {
+            consumer.accept(buffer);
+        }
     }
 
     /**
@@ -313,4 +712,345 @@ public class RedisUtils {
         // The range of IDs that are now reserved are from newIdRangeStart - increment + 1 to newIdRangeStart.
         return newIdRangeStart - increment + 1;
     }
+
+    /**
+     * @description: 批量获取对象（MGET），按批次发送
+     * @param keys redis的Key集合
+     * @return List<Object> 与keys顺序一致的结果，不存在的Key对应null
+     */
+    public List<Object> multiGet(Collection<String> keys) {
+        return multiGet(keys, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @description: 批量获取对象（MGET），按批次发送
+     * @param keys redis的Key集合
+     * @param batchSize 每批最大Key数量
+     * @return List<Object> 与keys顺序一致的结果，不存在的Key对应null
+     */
+    public List<Object> multiGet(Collection<String> keys, int batchSize) {
+        if (keys == null || keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        keys.forEach(keyStats::recordAccess);
+        List<Object> result = new ArrayList<>(keys.size());
+        for (List<String> batch : partition(keys, batchSize)) {
+            List<Object> values = redisTemplate.opsForValue().multiGet(batch);
+            if (values == null) {
+                values = Collections.nCopies(batch.size(), null);
+            }
+            result.addAll(values);
+        }
+        return result;
+    }
+
+    /**
+     * @description: 批量获取对象，返回Key到值的映射
+     * @param keys redis的Key集合
+     * @return Map<String, Object> 按keys顺序排列，不存在的Key不放入
+     */
+    public Map<String, Object> multiGetAsMap(Collection<String> keys) {
+        List<String> keyList = new ArrayList<>(keys);
+        List<Object> values = multiGet(keyList, DEFAULT_BATCH_SIZE);
+        Map<String, Object> result = new LinkedHashMap<>(keyList.size() * 2);
+        for (int i = 0; i < keyList.size(); i++) {
+            if (values.get(i) != null) {
+                result.put(keyList.get(i), values.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @description: 批量添加对象（MSET），按批次发送
+     * @param values Key和值的集合
+     */
+    public void multiSet(Map<String, ?> values) {
+        multiSet(values, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @description: 批量添加对象（MSET），按批次发送
+     * @param values Key和值的集合
+     * @param batchSize 每批最大Key数量
+     */
+    public void multiSet(Map<String, ?> values, int batchSize) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        values.keySet().forEach(keyStats::recordAccess);
+        for (List<String> batch : partition(values.keySet(), batchSize)) {
+            Map<byte[], byte[]> part = new LinkedHashMap<>(batch.size() * 2);
+            for (String key : batch) {
+                part.put(rawKey(key), serializeValue(key, values.get(key)));
+            }
+            redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.mSet(part));
+        }
+        values.keySet().forEach(nearCache::invalidate);
+    }
+
+    /**
+     * @description: 通过pipeline批量添加带生命周期的对象（SET EX），每个Key单独计算抖动
+     * @param values Key和值的集合
+     * @param seconds 失效时间，必须大于0
+     * @param jitterSeconds 最大随机抖动时间（秒），0表示不抖动
+     * @param batchSize 每个pipeline最大命令数量
+     */
+    public void multiSetAndExpire(Map<String, ?> values, int seconds, int jitterSeconds, int batchSize) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        values.keySet().forEach(keyStats::recordAccess);
+        for (List<String> batch : partition(values.keySet(), batchSize)) {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : batch) {
+                    connection.set(rawKey(key), serializeValue(key, values.get(key)),
+                            Expiration.milliseconds(ttlMillis(seconds, jitterSeconds)), RedisStringCommands.SetOption.upsert());
+                }
+                return null;
+            });
+        }
+        values.keySet().forEach(nearCache::invalidate);
+    }
+
+    /**
+     * @description: 批量获取hash的字段值（HMGET）
+     * @param key redis的Key
+     * @param fields 字段集合
+     * @return List<Object> 与fields顺序一致的结果，不存在的字段对应null
+     */
+    public List<Object> multiHashGet(String key, Collection<String> fields) {
+        return multiHashGet(key, fields, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @description: 批量获取hash的字段值（HMGET），按批次发送
+     * @param key redis的Key
+     * @param fields 字段集合
+     * @param batchSize 每批最大字段数量
+     * @return List<Object> 与fields顺序一致的结果，不存在的字段对应null
+     */
+    public List<Object> multiHashGet(String key, Collection<String> fields, int batchSize) {
+        keyStats.recordAccess(key);
+        if (fields == null || fields.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Object> result = new ArrayList<>(fields.size());
+        for (List<String> batch : partition(fields, batchSize)) {
+            result.addAll(redisTemplate.opsForHash().multiGet(key, new ArrayList<Object>(batch)));
+        }
+        return result;
+    }
+
+    /**
+     * @description: 通过pipeline批量获取多个hash中同一字段的值
+     * @param keys redis的Key集合
+     * @param field 字段值
+     * @param batchSize 每个pipeline最大命令数量
+     * @return List<Object> 与keys顺序一致的结果
+     */
+    public List<Object> multiHashGet(Collection<String> keys, String field, int batchSize) {
+        if (keys == null || keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        keys.forEach(keyStats::recordAccess);
+        List<Object> result = new ArrayList<>(keys.size());
+        for (List<String> batch : partition(keys, batchSize)) {
+            result.addAll(redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (String key : batch) {
+                        ops.opsForHash().get(key, field);
+                    }
+                    return null;
+                }
+            }));
+        }
+        return result;
+    }
+
+    /**
+     * @description: 通过pipeline批量存入多个hash集合
+     * @param hashes Key和hash集合的映射
+     * @param batchSize 每个pipeline最大命令数量
+     */
+    public void multiSetHashMap(Map<String, Map<String, Object>> hashes, int batchSize) {
+        if (hashes == null || hashes.isEmpty()) {
+            return;
+        }
+        hashes.keySet().forEach(keyStats::recordAccess);
+        for (List<String> batch : partition(hashes.keySet(), batchSize)) {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : batch) {
+                    connection.hMSet(rawKey(key), serializeHash(key, hashes.get(key)));
+                }
+                return null;
+            });
+        }
+        hashes.keySet().forEach(nearCache::invalidate);
+    }
+
+    /**
+     * @description: 通过pipeline批量判断值是否是set成员
+     * @param key set的key
+     * @param values set的成员集合
+     * @return List<Boolean> 与values顺序一致的结果
+     */
+    public List<Boolean> multiIsSetMember(String key, Collection<?> values) {
+        return multiIsSetMember(key, values, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @description: 通过pipeline批量判断值是否是set成员，按批次发送
+     * @param key set的key
+     * @param values set的成员集合
+     * @param batchSize 每个pipeline最大命令数量
+     * @return List<Boolean> 与values顺序一致的结果
+     */
+    public List<Boolean> multiIsSetMember(String key, Collection<?> values, int batchSize) {
+        keyStats.recordAccess(key);
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Boolean> result = new ArrayList<>(values.size());
+        byte[] rawKey = rawKey(key);
+        for (List<?> batch : partition(values, batchSize)) {
+            List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Object value : batch) {
+                    connection.sIsMember(rawKey, serializeValue(key, value));
+                }
+                return null;
+            });
+            for (Object reply : replies) {
+                result.add(Boolean.TRUE.equals(reply));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 计算带随机抖动的过期时间（毫秒）
+     *
+     * @param seconds 失效时间
+     * @param jitterSeconds 最大随机抖动时间（秒）
+     * @return 过期时间（毫秒）
+     * @throws IllegalArgumentException seconds小于等于0
+     */
+    public static long ttlMillis(int seconds, int jitterSeconds) {
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("seconds must be positive: " + seconds);
+        }
+        long ttl = seconds * 1000L;
+        if (jitterSeconds > 0) {
+            ttl += ThreadLocalRandom.current().nextLong(jitterSeconds * 1000L + 1);
+        }
+        return ttl;
+    }
+
+    /**
+     * 写入值，Key前缀在编解码器注册表中指定了编解码器时按前缀编码，过期时间大于0时使用SET PX
+     */
+    private void setValue(String key, Object value, long ttlMillis) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawValue = serializeValue(key, value);
+        keyStats.recordValue(key, rawValue);
+        redisTemplate.execute((RedisCallback<Object>) connection -> ttlMillis > 0
+                ? connection.set(rawKey, rawValue, Expiration.milliseconds(ttlMillis), RedisStringCommands.SetOption.upsert())
+                : connection.set(rawKey, rawValue));
+    }
+
+    /**
+     * 读取值，统计读到的字节数后再反序列化
+     *
+     * @param recordAccess 是否同时记录访问，调用方已记录时只统计大小
+     */
+    private Object getValue(String key, boolean recordAccess) {
+        byte[] rawKey = rawKey(key);
+        byte[] raw = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey));
+        if (recordAccess) {
+            keyStats.recordValue(key, raw);
+        } else if (raw != null) {
+            keyStats.recordSize(key, raw.length);
+        }
+        return raw == null ? null : redisTemplate.getValueSerializer().deserialize(raw);
+    }
+
+    /**
+     * 写入hash的单个字段，统计写入的字节数
+     */
+    private void setHashValue(String key, String field, Object value) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawField = rawHashKey(field);
+        byte[] rawValue = serializeHashValue(key, value);
+        keyStats.recordValue(key, rawValue);
+        redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.hSet(rawKey, rawField, rawValue));
+        nearCache.invalidate(key);
+    }
+
+    private byte[] rawKey(String key) {
+        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(key);
+    }
+
+    private byte[] rawHashKey(String field) {
+        return ((RedisSerializer<Object>) redisTemplate.getHashKeySerializer()).serialize(field);
+    }
+
+    /**
+     * 序列化值，Key前缀在编解码器注册表中指定了编解码器时按前缀编码
+     */
+    private byte[] serializeValue(String key, Object value) {
+        RedisSerializer<?> valueSerializer = redisTemplate.getValueSerializer();
+        return valueSerializer instanceof CodecRedisSerializer
+                ? ((CodecRedisSerializer) valueSerializer).serialize(key, value)
+                : serializeValue(value);
+    }
+
+    /**
+     * 序列化hash的字段值，Key前缀在编解码器注册表中指定了编解码器时按前缀编码
+     */
+    private byte[] serializeHashValue(String key, Object value) {
+        RedisSerializer<?> valueSerializer = redisTemplate.getHashValueSerializer();
+        return valueSerializer instanceof CodecRedisSerializer
+                ? ((CodecRedisSerializer) valueSerializer).serialize(key, value)
+                : ((RedisSerializer<Object>) valueSerializer).serialize(value);
+    }
+
+    private Map<byte[], byte[]> serializeHash(String key, Map<String, ?> hash) {
+        Map<byte[], byte[]> rawHash = new LinkedHashMap<>(hash.size() * 2);
+        for (Map.Entry<String, ?> entry : hash.entrySet()) {
+            rawHash.put(rawHashKey(entry.getKey()), serializeHashValue(key, entry.getValue()));
+        }
+        return rawHash;
+    }
+
+    /**
+     * 以原始字节参数执行脚本，参数已按模板的序列化方式编码
+     */
+    private Long executeScript(String script, String key, List<byte[]> args) {
+        return luaDemo.executeBinary(script, Long.class, Collections.singletonList(key), args);
+    }
+
+    private byte[] serializeValue(Object value) {
+        return ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(value);
+    }
+
+    private static byte[] longToBytes(long value) {
+        return Long.toString(value).getBytes(FastJson2JsonRedisSerializer.DEFAULT_CHARSET);
+    }
+
+    /**
+     * 按批次大小拆分集合，保持原有顺序
+     */
+    private static <T> List<List<T>> partition(Collection<T> items, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        List<T> list = items instanceof List ? (List<T>) items : new ArrayList<>(items);
+        List<List<T>> batches = new ArrayList<>((list.size() + batchSize - 1) / batchSize);
+        for (int from = 0; from < list.size(); from += batchSize) {
+            batches.add(list.subList(from, Math.min(from + batchSize, list.size())));
+        }
+        return batches;
+    }
 }
@@ -0,0 +1,187 @@
+package com.example.redisdemojdk8.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @description: 提前刷新的RedisCache
+ * <p>用于 @Cacheable(sync = true)：读取值的同时读取剩余存活时间，剩余时间低于TTL的 refreshRatio 时
+ * 在后台线程重新加载并写回，调用方直接拿到当前值，热点方法不会因为过期而阻塞在重新计算上。</p>
+ * <p>同一个Key在本进程内同时只加载一次：未命中时第一个调用方加载，其他调用方等待它的结果；
+ * 原实现在整个缓存上加锁，不同Key的加载会互相阻塞。刷新只在本进程内去重，多个节点可能各刷新一次。
+ * 刷新单独登记，未命中的调用方不等待刷新，刷新失败不会影响同步加载。
+ * 刷新线程池满时跳过本次刷新，值过期后由下一次调用同步加载。
+ * 刷新在后台线程中调用被缓存的方法，方法不能依赖请求上下文、事务等线程绑定的状态。</p>
+ * @author Kent HAN
+ * @date 2023/12/28 10:00
+ */
+@Slf4j
+public class RefreshAheadRedisCache extends RedisCache {
+
+    private final RedisConnectionFactory connectionFactory;
+
+    private final Executor refreshExecutor;
+
+    /**
+     * 剩余存活时间低于该值（毫秒）时提前刷新，0表示不刷新
+     */
+    private final long refreshThresholdMillis;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * 正在后台刷新的Key
+     */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder refreshes = new LongAdder();
+
+    private final LongAdder refreshFailures = new LongAdder();
+
+    /**
+     * @param name 缓存名
+     * @param cacheWriter 缓存写入器
+     * @param cacheConfig 缓存配置
+     * @param connectionFactory 读取剩余存活时间使用的连接工厂
+     * @param refreshExecutor 后台刷新的线程池
+     * @param refreshRatio 剩余存活时间低于TTL的该比例时提前刷新，小于等于0或TTL为0时不刷新
+     */
+    public RefreshAheadRedisCache(String name, RedisCacheWriter cacheWriter, RedisCacheConfiguration cacheConfig,
+                                  RedisConnectionFactory connectionFactory, Executor refreshExecutor,
+                                  double refreshRatio) {
+        super(name, cacheWriter, cacheConfig);
+        this.connectionFactory = connectionFactory;
+        this.refreshExecutor = refreshExecutor;
+        Duration ttl = cacheConfig.getTtl();
+        this.refreshThresholdMillis = refreshRatio > 0 && !ttl.isZero() && !ttl.isNegative()
+                ? (long) (ttl.toMillis() * Math.min(refreshRatio, 1)) : 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String cacheKey = createCacheKey(key);
+        byte[] binaryKey = serializeCacheKey(cacheKey);
+        Object stored;
+        if (refreshThresholdMillis > 0) {
+            List<Object> result = getWithTtl(binaryKey);
+            stored = result.get(0) == null ? null : deserializeCacheValue((byte[]) result.get(0));
+            Long ttl = (Long) result.get(1);
+            if (stored != null && ttl != null && ttl >= 0 && ttl < refreshThresholdMillis) {
+                refresh(key, cacheKey, valueLoader);
+            }
+        } else {
+            byte[] value = getNativeCache().get(getName(), binaryKey);
+            stored = value == null ? null : deserializeCacheValue(value);
+        }
+        if (stored != null) {
+            return (T) fromStoreValue(stored);
+        }
+        return (T) load(key, cacheKey, valueLoader);
+    }
+
+    /**
+     * @return 已提交的后台刷新次数
+     */
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    /**
+     * @return 后台刷新失败的次数
+     */
+    public long getRefreshFailureCount() {
+        return refreshFailures.sum();
+    }
+
+    /**
+     * 一次往返读取值和剩余存活时间
+     */
+    private List<Object> getWithTtl(byte[] binaryKey) {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            connection.openPipeline();
+            connection.stringCommands().get(binaryKey);
+            connection.keyCommands().pTtl(binaryKey);
+            return connection.closePipeline();
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * 未命中时同步加载，同一个Key只有一个调用方执行加载
+     */
+    private Object load(Object key, String cacheKey, Callable<?> valueLoader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> running = loading.putIfAbsent(cacheKey, future);
+        if (running == null) {
+            try {
+                // 上一个加载者可能在本次读取之后、登记之前已经写入，重新读取一次，避免重复加载
+                byte[] stored = getNativeCache().get(getName(), serializeCacheKey(cacheKey));
+                if (stored != null) {
+                    Object value = fromStoreValue(deserializeCacheValue(stored));
+                    future.complete(value);
+                    return value;
+                }
+                Object value = valueLoader.call();
+                put(key, value);
+                future.complete(value);
+                return value;
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+                throw new ValueRetrievalException(key, valueLoader, e);
+            } finally {
+                loading.remove(cacheKey, future);
+            }
+        }
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } catch (ExecutionException e) {
+            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+        }
+    }
+
+    /**
+     * 后台重新加载，已有加载或刷新在进行时跳过
+     */
+    private void refresh(Object key, String cacheKey, Callable<?> valueLoader) {
+        if (loading.containsKey(cacheKey) || !refreshing.add(cacheKey)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    put(key, valueLoader.call());
+                } catch (Exception e) {
+                    refreshFailures.increment();
+                    log.warn("缓存{}提前刷新{}失败，继续使用当前值：{}", getName(), cacheKey, e.getMessage());
+                } finally {
+                    refreshing.remove(cacheKey);
+                }
+            });
+            refreshes.increment();
+        } catch (RejectedExecutionException e) {
+            // 线程池已满，本次不刷新
+            refreshing.remove(cacheKey);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.redisdemojdk8.util;
+
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @description: 创建 {@link RefreshAheadRedisCache} 的RedisCacheManager
+ * <p>所有缓存共用一个后台刷新线程池，队列满时放弃刷新，不阻塞调用方。</p>
+ * @author Kent HAN
+ * @date 2023/12/28 10:30
+ */
+public class RefreshAheadRedisCacheManager extends RedisCacheManager {
+
+    private final RedisCacheWriter cacheWriter;
+
+    private final RedisConnectionFactory connectionFactory;
+
+    private final RedisCacheConfiguration defaultCacheConfiguration;
+
+    private final double refreshRatio;
+
+    private final ThreadPoolExecutor refreshExecutor;
+
+    /**
+     * @param connectionFactory 连接工厂
+     * @param defaultCacheConfiguration 未单独配置的缓存使用的配置
+     * @param initialCacheConfigurations 按缓存名单独配置
+     * @param refreshRatio 剩余存活时间低于TTL的该比例时提前刷新，0表示不刷新
+     * @param refreshThreads 后台刷新线程数
+     */
+    public RefreshAheadRedisCacheManager(RedisConnectionFactory connectionFactory,
+                                         RedisCacheConfiguration defaultCacheConfiguration,
+                                         Map<String, RedisCacheConfiguration> initialCacheConfigurations,
+                                         double refreshRatio, int refreshThreads) {
+        this(RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory), connectionFactory,
+                defaultCacheConfiguration, initialCacheConfigurations, refreshRatio, refreshThreads);
+    }
+
+    private RefreshAheadRedisCacheManager(RedisCacheWriter cacheWriter, RedisConnectionFactory connectionFactory,
+                                          RedisCacheConfiguration defaultCacheConfiguration,
+                                          Map<String, RedisCacheConfiguration> initialCacheConfigurations,
+                                          double refreshRatio, int refreshThreads) {
+        super(cacheWriter, defaultCacheConfiguration, initialCacheConfigurations);
+        this.cacheWriter = cacheWriter;
+        this.connectionFactory = connectionFactory;
+        this.defaultCacheConfiguration = defaultCacheConfiguration;
+        this.refreshRatio = refreshRatio;
+        AtomicInteger index = new AtomicInteger();
+        this.refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1024), r -> {
+                    Thread thread = new Thread(r, "redis-cache-refresh-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.refreshExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    protected RedisCache createRedisCache(String name, RedisCacheConfiguration cacheConfig) {
+        return new RefreshAheadRedisCache(name, cacheWriter,
+                cacheConfig != null ? cacheConfig : defaultCacheConfiguration, connectionFactory, refreshExecutor,
+                refreshRatio);
+    }
+
+    /**
+     * @description: 停止后台刷新
+     */
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,520 @@
+package com.example.redisdemojdk8.util;
+
+import com.alibaba.fastjson.JSON;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @description: 基于类结构的紧凑二进制编解码器
+ * <p>按字段名排序依次写入字段值，不写字段名和类名：整数使用zigzag变长编码，字符串使用长度+UTF-8，
+ * 引用类型前加1字节的null标记，元素为对象的列表按元素类结构逐个写入，不支持的类型以FastJson格式嵌入。数据开头记录类结构的指纹，
+ * 字段变化后旧数据会解码失败，类结构调整时需要注册新的编解码器ID并迁移数据。</p>
+ * @author Kent HAN
+ * @date 2023/12/21 11:00
+ */
+public class SchemaBinaryCodec<T> implements RedisCodec {
+
+    private final int id;
+
+    private final Class<T> type;
+
+    private final Constructor<T> constructor;
+
+    private final FieldCodec[] fields;
+
+    private final int fingerprint;
+
+    /**
+     * @param id 编解码器ID
+     * @param type 值类型，需要有无参构造方法
+     */
+    public SchemaBinaryCodec(int id, Class<T> type) {
+        this(id, type, new HashSet<>());
+    }
+
+    /**
+     * @param building 正在构建的类型，引用自身的列表元素按FastJson嵌入
+     */
+    private SchemaBinaryCodec(int id, Class<T> type, Set<Class<?>> building) {
+        this.id = id;
+        this.type = type;
+        try {
+            this.constructor = type.getDeclaredConstructor();
+            this.constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type.getName() + " has no no-arg constructor", e);
+        }
+        List<Field> declared = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+                    field.setAccessible(true);
+                    declared.add(field);
+                }
+            }
+        }
+        declared.sort(Comparator.comparing(Field::getName).thenComparing(f -> f.getDeclaringClass().getName()));
+        building.add(type);
+        this.fields = new FieldCodec[declared.size()];
+        StringBuilder schema = new StringBuilder(type.getName());
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = new FieldCodec(declared.get(i), building);
+            schema.append(';').append(declared.get(i).getName()).append(':').append(declared.get(i).getGenericType());
+            if (fields[i].elementCodec != null) {
+                // 元素类结构变化时外层指纹同样变化
+                schema.append('[').append(fields[i].elementCodec.fingerprint).append(']');
+            }
+        }
+        building.remove(type);
+        this.fingerprint = schema.toString().hashCode();
+    }
+
+    @Override
+    public int id() {
+        return id;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        if (!type.isInstance(value)) {
+            throw new SerializationException("Expected " + type.getName() + " but got " + value.getClass().getName());
+        }
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeFixedInt(fingerprint);
+        try {
+            writeFields(writer, value);
+        } catch (IllegalAccessException e) {
+            throw new SerializationException("Cannot encode " + type.getName(), e);
+        }
+        return writer.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int offset, int length) {
+        BinaryReader reader = new BinaryReader(bytes, offset, offset + length);
+        if (reader.readFixedInt() != fingerprint) {
+            throw new SerializationException("Schema of " + type.getName() + " does not match codec " + id);
+        }
+        try {
+            return readFields(reader);
+        } catch (ReflectiveOperationException e) {
+            throw new SerializationException("Cannot decode " + type.getName(), e);
+        }
+    }
+
+    private void writeFields(BinaryWriter writer, Object value) throws IllegalAccessException {
+        for (FieldCodec field : fields) {
+            field.write(writer, value);
+        }
+    }
+
+    private T readFields(BinaryReader reader) throws ReflectiveOperationException {
+        T value = constructor.newInstance();
+        for (FieldCodec field : fields) {
+            field.read(reader, value);
+        }
+        return value;
+    }
+
+    private enum Kind {
+        BOOLEAN, BYTE, SHORT, CHAR, INT, LONG, FLOAT, DOUBLE, STRING, DATE, BIG_DECIMAL, ENUM, LIST, JSON
+    }
+
+    private static Kind kindOf(Class<?> c) {
+        if (c == boolean.class || c == Boolean.class) {
+            return Kind.BOOLEAN;
+        } else if (c == byte.class || c == Byte.class) {
+            return Kind.BYTE;
+        } else if (c == short.class || c == Short.class) {
+            return Kind.SHORT;
+        } else if (c == char.class || c == Character.class) {
+            return Kind.CHAR;
+        } else if (c == int.class || c == Integer.class) {
+            return Kind.INT;
+        } else if (c == long.class || c == Long.class) {
+            return Kind.LONG;
+        } else if (c == float.class || c == Float.class) {
+            return Kind.FLOAT;
+        } else if (c == double.class || c == Double.class) {
+            return Kind.DOUBLE;
+        } else if (c == String.class) {
+            return Kind.STRING;
+        } else if (c == Date.class) {
+            return Kind.DATE;
+        } else if (c == BigDecimal.class) {
+            return Kind.BIG_DECIMAL;
+        } else if (c.isEnum()) {
+            return Kind.ENUM;
+        }
+        return Kind.JSON;
+    }
+
+    /**
+     * List、Collection类型字段的元素类型，解码时使用ArrayList，无法确定元素类型时返回null
+     */
+    private static Class<?> elementTypeOf(Field field) {
+        Class<?> c = field.getType();
+        if (!Collection.class.isAssignableFrom(c) || !c.isAssignableFrom(ArrayList.class)
+                || !(field.getGenericType() instanceof ParameterizedType)) {
+            return null;
+        }
+        Type element = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+        return element instanceof Class ? (Class<?>) element : null;
+    }
+
+    /**
+     * 是否可以按类结构编码：有无参构造方法的具体类，JDK中的类和正在构建的类型除外
+     */
+    private static boolean isSchemaType(Class<?> c, Set<Class<?>> building) {
+        if (c.isInterface() || c.isArray() || Modifier.isAbstract(c.getModifiers())
+                || c.getName().startsWith("java.") || building.contains(c)) {
+            return false;
+        }
+        try {
+            c.getDeclaredConstructor();
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static void writeValue(BinaryWriter writer, Kind kind, Object value) {
+        switch (kind) {
+            case BOOLEAN:
+                writer.writeByte((Boolean) value ? 1 : 0);
+                break;
+            case BYTE:
+                writer.writeByte((Byte) value);
+                break;
+            case SHORT:
+                writer.writeVarLong((Short) value);
+                break;
+            case CHAR:
+                writer.writeVarLong((Character) value);
+                break;
+            case INT:
+                writer.writeVarLong((Integer) value);
+                break;
+            case LONG:
+                writer.writeVarLong((Long) value);
+                break;
+            case FLOAT:
+                writer.writeFixedInt(Float.floatToIntBits((Float) value));
+                break;
+            case DOUBLE:
+                writer.writeFixedLong(Double.doubleToLongBits((Double) value));
+                break;
+            case STRING:
+                writer.writeString((String) value);
+                break;
+            case DATE:
+                writer.writeVarLong(((Date) value).getTime());
+                break;
+            case BIG_DECIMAL:
+                writer.writeString(value.toString());
+                break;
+            case ENUM:
+                writer.writeString(((Enum<?>) value).name());
+                break;
+            default:
+                throw new IllegalStateException("Not a scalar kind: " + kind);
+        }
+    }
+
+    private static Object readValue(BinaryReader reader, Kind kind, Class<?> type) {
+        switch (kind) {
+            case BOOLEAN:
+                return reader.readByte() != 0;
+            case BYTE:
+                return reader.readByte();
+            case SHORT:
+                return (short) reader.readVarLong();
+            case CHAR:
+                return (char) reader.readVarLong();
+            case INT:
+                return (int) reader.readVarLong();
+            case LONG:
+                return reader.readVarLong();
+            case FLOAT:
+                return Float.intBitsToFloat(reader.readFixedInt());
+            case DOUBLE:
+                return Double.longBitsToDouble(reader.readFixedLong());
+            case STRING:
+                return reader.readString();
+            case DATE:
+                return new Date(reader.readVarLong());
+            case BIG_DECIMAL:
+                return new BigDecimal(reader.readString());
+            case ENUM:
+                return Enum.valueOf(type.asSubclass(Enum.class), reader.readString());
+            default:
+                throw new IllegalStateException("Not a scalar kind: " + kind);
+        }
+    }
+
+    /**
+     * 单个字段的读写
+     * <p>元素为基本类型、字符串等或可按类结构编码的列表，逐个元素写入：长度 + 每个元素的null标记和值，
+     * 对象元素按元素类型的字段依次写入，不重复写指纹；其他列表以FastJson格式嵌入。</p>
+     */
+    private static final class FieldCodec {
+
+        private final Field field;
+
+        private final Kind kind;
+
+        private final boolean primitive;
+
+        /**
+         * LIST字段的元素类型
+         */
+        private final Class<?> elementType;
+
+        private final Kind elementKind;
+
+        /**
+         * LIST字段的元素为对象时，按元素类结构编码
+         */
+        private final SchemaBinaryCodec<?> elementCodec;
+
+        private FieldCodec(Field field, Set<Class<?>> building) {
+            this.field = field;
+            this.primitive = field.getType().isPrimitive();
+            Class<?> element = elementTypeOf(field);
+            Kind kindOfElement = element == null ? null : kindOf(element);
+            SchemaBinaryCodec<?> codecOfElement = kindOfElement == Kind.JSON && isSchemaType(element, building)
+                    ? new SchemaBinaryCodec<>(0, element, building) : null;
+            if (kindOfElement != null && (kindOfElement != Kind.JSON || codecOfElement != null)) {
+                this.kind = Kind.LIST;
+                this.elementType = element;
+                this.elementKind = kindOfElement;
+                this.elementCodec = codecOfElement;
+            } else {
+                this.kind = kindOf(field.getType());
+                this.elementType = null;
+                this.elementKind = null;
+                this.elementCodec = null;
+            }
+        }
+
+        private void write(BinaryWriter writer, Object target) throws IllegalAccessException {
+            Object value = field.get(target);
+            if (!primitive) {
+                if (value == null) {
+                    writer.writeByte(0);
+                    return;
+                }
+                writer.writeByte(1);
+            }
+            if (kind == Kind.LIST) {
+                writeList(writer, (Collection<?>) value);
+            } else if (kind == Kind.JSON) {
+                writer.writeBytes(JSON.toJSONBytes(value));
+            } else {
+                writeValue(writer, kind, value);
+            }
+        }
+
+        private void writeList(BinaryWriter writer, Collection<?> values) throws IllegalAccessException {
+            writer.writeVarLong(values.size());
+            for (Object element : values) {
+                if (element == null) {
+                    writer.writeByte(0);
+                    continue;
+                }
+                writer.writeByte(1);
+                if (elementCodec == null) {
+                    writeValue(writer, elementKind, element);
+                } else if (element.getClass() == elementType) {
+                    elementCodec.writeFields(writer, element);
+                } else {
+                    // 子类的字段无法按元素类结构还原
+                    throw new SerializationException("Element of " + field.getName() + " must be "
+                            + elementType.getName() + " but got " + element.getClass().getName());
+                }
+            }
+        }
+
+        private void read(BinaryReader reader, Object target) throws ReflectiveOperationException {
+            if (!primitive && reader.readByte() == 0) {
+                field.set(target, null);
+                return;
+            }
+            Object value;
+            if (kind == Kind.LIST) {
+                value = readList(reader);
+            } else if (kind == Kind.JSON) {
+                int length = reader.readLength();
+                Type genericType = field.getGenericType();
+                value = JSON.parseObject(reader.bytes, reader.position, length,
+                        FastJson2JsonRedisSerializer.DEFAULT_CHARSET, genericType);
+                reader.position += length;
+            } else {
+                value = readValue(reader, kind, field.getType());
+            }
+            field.set(target, value);
+        }
+
+        private List<Object> readList(BinaryReader reader) throws ReflectiveOperationException {
+            // 每个元素至少占1字节的null标记，长度不会超过剩余字节数
+            int size = reader.readLength();
+            List<Object> values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                if (reader.readByte() == 0) {
+                    values.add(null);
+                } else if (elementCodec == null) {
+                    values.add(readValue(reader, elementKind, elementType));
+                } else {
+                    values.add(elementCodec.readFields(reader));
+                }
+            }
+            return values;
+        }
+    }
+
+    private static final class BinaryWriter {
+
+        private byte[] buffer = new byte[64];
+
+        private int size;
+
+        private void ensure(int n) {
+            if (size + n > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + n));
+            }
+        }
+
+        private void writeByte(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+        }
+
+        private void writeFixedInt(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeFixedLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        /**
+         * zigzag变长编码，绝对值小的数占用字节少
+         */
+        private void writeVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            ensure(10);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[size++] = (byte) zigzag;
+        }
+
+        private void writeString(String value) {
+            writeBytes(value.getBytes(FastJson2JsonRedisSerializer.DEFAULT_CHARSET));
+        }
+
+        private void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    private static final class BinaryReader {
+
+        private final byte[] bytes;
+
+        private final int limit;
+
+        private int position;
+
+        private BinaryReader(byte[] bytes, int offset, int limit) {
+            this.bytes = bytes;
+            this.position = offset;
+            this.limit = limit;
+        }
+
+        private void require(int n) {
+            if (position + n > limit) {
+                throw new SerializationException("Binary payload is truncated");
+            }
+        }
+
+        private byte readByte() {
+            require(1);
+            return bytes[position++];
+        }
+
+        private int readFixedInt() {
+            require(4);
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | (bytes[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        private long readFixedLong() {
+            require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (bytes[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        private long readVarLong() {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new SerializationException("Malformed varint");
+        }
+
+        private int readLength() {
+            long length = readVarLong();
+            if (length < 0 || length > limit - position) {
+                throw new SerializationException("Binary payload is truncated");
+            }
+            return (int) length;
+        }
+
+        private String readString() {
+            int length = readLength();
+            String value = new String(bytes, position, length, FastJson2JsonRedisSerializer.DEFAULT_CHARSET);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.redisdemojdk8.util;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.Arrays;
+
+/**
+ * @description: 基于已有RedisSerializer的编解码器，用于FastJson、Jackson等JSON格式
+ * @author Kent HAN
+ * @date 2023/12/21 9:35
+ */
+public class SerializerRedisCodec implements RedisCodec {
+
+    private final int id;
+
+    private final RedisSerializer<Object> serializer;
+
+    public SerializerRedisCodec(int id, RedisSerializer<?> serializer) {
+        this.id = id;
+        this.serializer = (RedisSerializer<Object>) serializer;
+    }
+
+    @Override
+    public int id() {
+        return id;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return serializer.serialize(value);
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int offset, int length) {
+        return serializer.deserialize(Arrays.copyOfRange(bytes, offset, offset + length));
+    }
+}
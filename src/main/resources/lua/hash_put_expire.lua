@@ -0,0 +1,8 @@
+-- 写入hash字段并设置过期时间
+-- KEYS[1]: hash的Key
+-- ARGV[1]: 过期时间（毫秒）
+-- ARGV[2..n]: field, value 交替排列
+for i = 2, #ARGV, 2 do
+    redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+end
+return redis.call('PEXPIRE', KEYS[1], ARGV[1])
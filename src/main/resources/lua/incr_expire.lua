@@ -0,0 +1,9 @@
+-- 计数器自增并设置过期时间点
+-- KEYS[1]: 计数器的Key
+-- ARGV[1]: 自增步长
+-- ARGV[2]: 过期时间点（毫秒时间戳），小于等于0表示不设置；已有过期时间时不覆盖
+local value = redis.call('INCRBY', KEYS[1], ARGV[1])
+if tonumber(ARGV[2]) > 0 and redis.call('PTTL', KEYS[1]) < 0 then
+    redis.call('PEXPIREAT', KEYS[1], ARGV[2])
+end
+return value
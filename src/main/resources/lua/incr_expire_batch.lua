@@ -0,0 +1,13 @@
+-- 批量计数器自增并设置过期时间点
+-- KEYS[1..n]: 计数器的Key
+-- ARGV[1..n]: 对应Key的自增步长
+-- ARGV[n+1]: 过期时间点（毫秒时间戳），小于等于0表示不设置；已有过期时间时不覆盖
+local expireAt = tonumber(ARGV[#KEYS + 1])
+local values = {}
+for i = 1, #KEYS do
+    values[i] = redis.call('INCRBY', KEYS[i], ARGV[i])
+    if expireAt > 0 and redis.call('PTTL', KEYS[i]) < 0 then
+        redis.call('PEXPIREAT', KEYS[i], expireAt)
+    end
+end
+return values
@@ -0,0 +1,10 @@
+-- 向list插入数据并设置过期时间
+-- KEYS[1]: list的Key
+-- ARGV[1]: 过期时间（毫秒）
+-- ARGV[2]: 插入方向，L：队头 R：队尾
+-- ARGV[3..n]: 插入的值
+local command = ARGV[2] == 'L' and 'LPUSH' or 'RPUSH'
+for i = 3, #ARGV do
+    redis.call(command, KEYS[1], ARGV[i])
+end
+return redis.call('PEXPIRE', KEYS[1], ARGV[1])
@@ -0,0 +1,9 @@
+-- 加锁，失败时返回锁的剩余租期，等待者据此决定最长等待时间
+-- KEYS[1]: 锁的Key
+-- ARGV[1]: 持有者令牌
+-- ARGV[2]: 租期（毫秒）
+-- 返回: 加锁成功返回nil，否则返回PTTL
+if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then
+    return nil
+end
+return redis.call('PTTL', KEYS[1])
@@ -0,0 +1,10 @@
+-- 释放锁，只有持有者可以释放；释放后发布通知唤醒等待者
+-- KEYS[1]: 锁的Key
+-- ARGV[1]: 持有者令牌
+-- ARGV[2]: 释放通知的频道，消息内容为锁的Key
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    redis.call('DEL', KEYS[1])
+    redis.call('PUBLISH', ARGV[2], KEYS[1])
+    return 1
+end
+return 0
@@ -0,0 +1,8 @@
+-- 续期锁，只有持有者可以续期
+-- KEYS[1]: 锁的Key
+-- ARGV[1]: 持有者令牌
+-- ARGV[2]: 新的租期（毫秒）
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+end
+return 0
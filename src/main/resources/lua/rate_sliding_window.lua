@@ -0,0 +1,31 @@
+-- 滑动窗口日志限流，zset中每个成员是一次放行，分值为放行时间（毫秒）
+-- KEYS[1]: 窗口的zset
+-- ARGV[1]: 窗口内允许的次数
+-- ARGV[2]: 窗口长度（毫秒）
+-- ARGV[3]: 申请的次数
+-- ARGV[4]: 本次申请的唯一标识，用于生成成员
+-- 返回: {是否获得(1/0), 窗口内剩余次数, 获得失败时需要等待的毫秒数}
+if redis.replicate_commands then
+    redis.replicate_commands()
+end
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local limit = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+redis.call('ZREMRANGEBYSCORE', KEYS[1], 0, now - window)
+local count = redis.call('ZCARD', KEYS[1])
+if count + requested <= limit then
+    for i = 1, requested do
+        redis.call('ZADD', KEYS[1], now, ARGV[4] .. ':' .. i)
+    end
+    redis.call('PEXPIRE', KEYS[1], window)
+    return {1, limit - count - requested, 0}
+end
+if requested > limit then
+    return {0, limit - count, -1}
+end
+-- 第(count + requested - limit)早的记录移出窗口后才有足够的余量
+local index = count + requested - limit - 1
+local oldest = redis.call('ZRANGE', KEYS[1], index, index, 'WITHSCORES')
+return {0, limit - count, math.max(1, tonumber(oldest[2]) + window - now)}
@@ -0,0 +1,30 @@
+-- 令牌桶限流，按Redis服务器时间补充令牌
+-- KEYS[1]: 令牌桶的hash，tokens为剩余令牌数，ts为上次补充的时间（毫秒）
+-- ARGV[1]: 桶容量
+-- ARGV[2]: 每秒补充的令牌数
+-- ARGV[3]: 申请的令牌数
+-- 返回: {是否获得(1/0), 剩余令牌数（向下取整）, 获得失败时需要等待的毫秒数}
+if redis.replicate_commands then
+    redis.replicate_commands()
+end
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local capacity = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(state[1]) or capacity
+local ts = tonumber(state[2]) or now
+tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate / 1000)
+local granted = 0
+local wait = 0
+if tokens >= requested then
+    tokens = tokens - requested
+    granted = 1
+else
+    wait = math.ceil((requested - tokens) * 1000 / rate)
+end
+redis.call('HMSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+-- 桶补满之后状态与不存在相同
+redis.call('PEXPIRE', KEYS[1], math.ceil(capacity * 1000 / rate) + 1000)
+return {granted, math.floor(tokens), wait}
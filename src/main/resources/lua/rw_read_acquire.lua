@@ -0,0 +1,28 @@
+-- 读锁加锁，hash中writer字段为写锁持有者，r:开头的字段为读锁持有者，值为该读者的过期时间点
+-- KEYS[1]: 读写锁的hash
+-- KEYS[2]: 写意向Key，存在时有写者在等待，新的读者不能加锁
+-- ARGV[1]: 持有者令牌
+-- ARGV[2]: 租期（毫秒）
+-- 返回: 加锁成功返回nil，否则返回需要等待的时间（毫秒）
+if redis.replicate_commands then
+    redis.replicate_commands()
+end
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local fields = redis.call('HGETALL', KEYS[1])
+for i = 1, #fields, 2 do
+    if string.sub(fields[i], 1, 2) == 'r:' and tonumber(fields[i + 1]) <= now then
+        redis.call('HDEL', KEYS[1], fields[i])
+    end
+end
+if redis.call('HEXISTS', KEYS[1], 'writer') == 1 then
+    return redis.call('PTTL', KEYS[1])
+end
+if redis.call('EXISTS', KEYS[2]) == 1 then
+    return redis.call('PTTL', KEYS[2])
+end
+redis.call('HSET', KEYS[1], 'r:' .. ARGV[1], now + tonumber(ARGV[2]))
+if redis.call('PTTL', KEYS[1]) < tonumber(ARGV[2]) then
+    redis.call('PEXPIRE', KEYS[1], ARGV[2])
+end
+return nil
@@ -0,0 +1,21 @@
+-- 释放读锁、写锁或写意向，锁变为可获得时发布通知
+-- KEYS[1]: 读写锁的hash
+-- KEYS[2]: 写意向Key
+-- ARGV[1]: 持有者令牌
+-- ARGV[2]: read、write 或 intent
+-- ARGV[3]: 释放通知的频道，消息内容为读写锁的hash Key
+-- 返回: 释放成功返回1，不是持有者返回0
+local released = 0
+if ARGV[2] == 'read' then
+    released = redis.call('HDEL', KEYS[1], 'r:' .. ARGV[1])
+elseif ARGV[2] == 'write' then
+    if redis.call('HGET', KEYS[1], 'writer') == ARGV[1] then
+        released = redis.call('HDEL', KEYS[1], 'writer')
+    end
+elseif redis.call('GET', KEYS[2]) == ARGV[1] then
+    released = redis.call('DEL', KEYS[2])
+end
+if released == 1 and (ARGV[2] ~= 'read' or redis.call('HLEN', KEYS[1]) == 0) then
+    redis.call('PUBLISH', ARGV[3], KEYS[1])
+end
+return released
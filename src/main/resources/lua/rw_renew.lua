@@ -0,0 +1,25 @@
+-- 续期读锁或写锁，只有持有者可以续期
+-- KEYS[1]: 读写锁的hash
+-- ARGV[1]: 持有者令牌
+-- ARGV[2]: read 或 write
+-- ARGV[3]: 新的租期（毫秒）
+if redis.replicate_commands then
+    redis.replicate_commands()
+end
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local lease = tonumber(ARGV[3])
+if ARGV[2] == 'read' then
+    if redis.call('HEXISTS', KEYS[1], 'r:' .. ARGV[1]) == 0 then
+        return 0
+    end
+    redis.call('HSET', KEYS[1], 'r:' .. ARGV[1], now + lease)
+    if redis.call('PTTL', KEYS[1]) < lease then
+        redis.call('PEXPIRE', KEYS[1], lease)
+    end
+    return 1
+end
+if redis.call('HGET', KEYS[1], 'writer') == ARGV[1] then
+    return redis.call('PEXPIRE', KEYS[1], lease)
+end
+return 0
@@ -0,0 +1,40 @@
+-- 写锁加锁，有读者时登记写意向，阻止新的读者加锁，避免写者饥饿
+-- KEYS[1]: 读写锁的hash
+-- KEYS[2]: 写意向Key
+-- ARGV[1]: 持有者令牌
+-- ARGV[2]: 租期（毫秒）
+-- 返回: 加锁成功返回nil，否则返回需要等待的时间（毫秒）
+if redis.replicate_commands then
+    redis.replicate_commands()
+end
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local readers = 0
+local fields = redis.call('HGETALL', KEYS[1])
+for i = 1, #fields, 2 do
+    if string.sub(fields[i], 1, 2) == 'r:' then
+        if tonumber(fields[i + 1]) <= now then
+            redis.call('HDEL', KEYS[1], fields[i])
+        else
+            readers = readers + 1
+        end
+    end
+end
+if redis.call('HEXISTS', KEYS[1], 'writer') == 1 then
+    return redis.call('PTTL', KEYS[1])
+end
+local intent = redis.call('GET', KEYS[2])
+if readers > 0 then
+    if not intent or intent == ARGV[1] then
+        redis.call('SET', KEYS[2], ARGV[1], 'PX', ARGV[2])
+    end
+    return redis.call('PTTL', KEYS[1])
+end
+if intent and intent ~= ARGV[1] then
+    -- 先登记意向的写者优先
+    return redis.call('PTTL', KEYS[2])
+end
+redis.call('DEL', KEYS[2])
+redis.call('HSET', KEYS[1], 'writer', ARGV[1])
+redis.call('PEXPIRE', KEYS[1], ARGV[2])
+return nil
@@ -0,0 +1,32 @@
+-- 分布式信号量加锁，zset中每个成员是一个许可，分值为租约到期时间（毫秒）
+-- KEYS[1]: 信号量的zset
+-- ARGV[1]: 许可总数
+-- ARGV[2]: 租期（毫秒）
+-- ARGV[3]: 申请的许可数
+-- ARGV[4]: 持有者令牌
+-- 返回: {是否获得(1/0), 剩余许可数, 获得失败时最早到期的租约还有多少毫秒}
+if redis.replicate_commands then
+    redis.replicate_commands()
+end
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local limit = tonumber(ARGV[1])
+local lease = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+redis.call('ZREMRANGEBYSCORE', KEYS[1], 0, now)
+local count = redis.call('ZCARD', KEYS[1])
+if count + requested > limit then
+    local earliest = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+    local wait = -1
+    if earliest[2] then
+        wait = math.max(1, tonumber(earliest[2]) - now)
+    end
+    return {0, limit - count, wait}
+end
+for i = 1, requested do
+    redis.call('ZADD', KEYS[1], now + lease, ARGV[4] .. ':' .. i)
+end
+if redis.call('PTTL', KEYS[1]) < lease then
+    redis.call('PEXPIRE', KEYS[1], lease)
+end
+return {1, limit - count - requested, 0}
@@ -0,0 +1,31 @@
+-- 分布式信号量释放或续期，只操作本令牌的许可
+-- KEYS[1]: 信号量的zset
+-- ARGV[1]: 持有者令牌
+-- ARGV[2]: 许可数
+-- ARGV[3]: 续期的租期（毫秒），0表示释放
+-- ARGV[4]: 释放通知的频道，消息内容为信号量的Key
+-- 返回: 释放或续期的许可数，租约已过期的许可不计入
+if redis.replicate_commands then
+    redis.replicate_commands()
+end
+local permits = tonumber(ARGV[2])
+local lease = tonumber(ARGV[3])
+local changed = 0
+if lease > 0 then
+    local time = redis.call('TIME')
+    local expireAt = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000) + lease
+    for i = 1, permits do
+        changed = changed + redis.call('ZADD', KEYS[1], 'XX', 'CH', expireAt, ARGV[1] .. ':' .. i)
+    end
+    if changed > 0 and redis.call('PTTL', KEYS[1]) < lease then
+        redis.call('PEXPIRE', KEYS[1], lease)
+    end
+    return changed
+end
+for i = 1, permits do
+    changed = changed + redis.call('ZREM', KEYS[1], ARGV[1] .. ':' .. i)
+end
+if changed > 0 then
+    redis.call('PUBLISH', ARGV[4], KEYS[1])
+end
+return changed
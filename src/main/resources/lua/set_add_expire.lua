@@ -0,0 +1,8 @@
+-- 添加set成员并设置过期时间
+-- KEYS[1]: set的Key
+-- ARGV[1]: 过期时间（毫秒）
+-- ARGV[2..n]: set成员
+for i = 2, #ARGV do
+    redis.call('SADD', KEYS[1], ARGV[i])
+end
+return redis.call('PEXPIRE', KEYS[1], ARGV[1])
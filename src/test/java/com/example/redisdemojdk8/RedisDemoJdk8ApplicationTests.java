@@ -1,6 +1,6 @@
 package com.example.redisdemojdk8;
 
-import org.junit.jupiter.api.Test;
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -10,7 +10,7 @@ import org.springframework.test.context.junit4.SpringRunner;
 public class RedisDemoJdk8ApplicationTests {
 
     @Test
-    void contextLoads() {
+    public void contextLoads() {
     }
 
 }
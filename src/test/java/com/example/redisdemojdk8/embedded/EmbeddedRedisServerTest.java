@@ -0,0 +1,116 @@
+package com.example.redisdemojdk8.embedded;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import redis.clients.jedis.Jedis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 内嵌Redis不依赖外部服务，可以直接运行
+ */
+public class EmbeddedRedisServerTest {
+
+    private static EmbeddedRedisServer server;
+
+    private static LettuceConnectionFactory factory;
+
+    private static StringRedisTemplate template;
+
+    @BeforeClass
+    public static void start() throws Exception {
+        server = new EmbeddedRedisServer(0);
+        server.start();
+        factory = new LettuceConnectionFactory("127.0.0.1", server.getPort());
+        factory.afterPropertiesSet();
+        template = new StringRedisTemplate(factory);
+    }
+
+    @AfterClass
+    public static void stop() {
+        factory.destroy();
+        server.stop();
+    }
+
+    @Test
+    public void jedisCommands() {
+        try (Jedis jedis = new Jedis("127.0.0.1", server.getPort())) {
+            jedis.auth("any");
+            jedis.select(7);
+            assertEquals("OK", jedis.set("embedded:s", "v"));
+            assertEquals("v", jedis.get("embedded:s"));
+            assertEquals(5L, jedis.incrBy("embedded:n", 5).longValue());
+            assertEquals(1L, jedis.hset("embedded:h", "a", "1").longValue());
+            assertEquals(1L, jedis.hset("embedded:h", Collections.singletonMap("b", "2")).longValue());
+            assertEquals(Arrays.asList("1", null), jedis.hmget("embedded:h", "a", "c"));
+            assertEquals(2L, jedis.rpush("embedded:l", "x", "y").longValue());
+            assertEquals("x", jedis.lpop("embedded:l"));
+            assertEquals(1L, jedis.sadd("embedded:set", "m").longValue());
+            assertTrue(jedis.sismember("embedded:set", "m"));
+            assertEquals(1L, jedis.expire("embedded:s", 100).longValue());
+            assertTrue(jedis.ttl("embedded:s") > 0);
+            assertEquals("WRONGTYPE Operation against a key holding the wrong kind of value",
+                    assertThrows(Exception.class, () -> jedis.get("embedded:h")).getMessage());
+            assertEquals(4L, jedis.unlink("embedded:s", "embedded:n", "embedded:h", "embedded:l").longValue());
+        }
+    }
+
+    @Test
+    public void scanVisitsEveryKeyWhileDeleting() {
+        for (int i = 0; i < 1000; i++) {
+            template.opsForValue().set("embedded:scan:" + i, "v");
+        }
+        template.opsForValue().set("embedded:other", "v");
+        Set<String> seen = new HashSet<>();
+        ScanOptions options = ScanOptions.scanOptions().match("embedded:scan:*").count(100).build();
+        try (Cursor<byte[]> cursor = template.executeWithStickyConnection(connection -> connection.scan(options))) {
+            while (cursor.hasNext()) {
+                String key = new String(cursor.next(), StandardCharsets.UTF_8);
+                assertTrue(seen.add(key));
+                template.delete(key);
+            }
+        }
+        assertEquals(1000, seen.size());
+        assertEquals(Boolean.TRUE, template.hasKey("embedded:other"));
+    }
+
+    @Test
+    public void evalScripts() {
+        RedisScript<Long> script = RedisScript.of(new ClassPathResource("lua/incr_expire.lua"), Long.class);
+        long expireAt = System.currentTimeMillis() + 60_000;
+        assertEquals(3L, template.execute(script, Collections.singletonList("embedded:counter"),
+                "3", Long.toString(expireAt)).longValue());
+        assertEquals(5L, template.execute(script, Collections.singletonList("embedded:counter"),
+                "2", Long.toString(expireAt)).longValue());
+        Long ttl = template.getExpire("embedded:counter", TimeUnit.MILLISECONDS);
+        assertTrue(ttl > 0 && ttl <= 60_000);
+        RedisScript<Long> error = RedisScript.of("return redis.call('HGET', KEYS[1], 'f')", Long.class);
+        assertThrows(Exception.class, () -> template.execute(error, Collections.singletonList("embedded:counter")));
+    }
+
+    @Test
+    public void latencyInjection() {
+        server.setLatency(20_000, 0);
+        try {
+            long start = System.nanoTime();
+            template.opsForValue().get("embedded:latency");
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        } finally {
+            server.setLatency(0, 0);
+        }
+    }
+}
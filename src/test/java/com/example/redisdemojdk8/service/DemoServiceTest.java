@@ -1,15 +1,26 @@
 package com.example.redisdemojdk8.service;
 
 import com.example.redisdemojdk8.RedisDemoJdk8ApplicationTests;
+import com.example.redisdemojdk8.util.RedisHashMapper;
 import com.example.redisdemojdk8.util.RedisUtils;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
 public class DemoServiceTest extends RedisDemoJdk8ApplicationTests {
 
     @Autowired
     RedisUtils redisUtils;
 
+    @Autowired
+    VersionGenerator versionGenerator;
+
     @Test
     public void demoMethod() {
         redisUtils.set("foo", "bar");
@@ -28,9 +39,62 @@ public class DemoServiceTest extends RedisDemoJdk8ApplicationTests {
         System.out.println(mytype);
     }
 
+    @Test
+    public void nextVersion() {
+        for (int i = 0; i < 5; i++) {
+            System.out.println(versionGenerator.nextVersion("mytype2"));
+        }
+    }
+
     @Test
     public void getGlobalIdRange() {
+        // demoMethod把globalId写成了JSON字符串，INCRBY之前先删除
+        redisUtils.del("globalId");
         Long globalId = redisUtils.getGlobalIdRange("globalId", 1000);
-        System.out.println(globalId);
+        assertEquals(Long.valueOf(1), globalId);
+        assertEquals(Long.valueOf(1001), redisUtils.getGlobalIdRange("globalId", 1000));
+    }
+
+    @Test
+    public void multiGet() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("multi:foo", "bar");
+        values.put("multi:globalId", "1");
+        redisUtils.multiSet(values, 1);
+        redisUtils.del("multi:missing");
+        List<Object> result = redisUtils.multiGet(Arrays.asList("multi:globalId", "multi:missing", "multi:foo"), 2);
+        assertEquals(Arrays.asList("1", null, "bar"), result);
+    }
+
+    @Test
+    public void incrAndExpireAt() {
+        long expireAt = System.currentTimeMillis() + 60000;
+        System.out.println(redisUtils.incrAndExpireAt("counter", 5, expireAt));
+        long[] values = redisUtils.incrAndExpireAt(Arrays.asList("counter", "counter2"), new long[]{1, 2}, expireAt);
+        System.out.println(Arrays.toString(values));
+    }
+
+    @Test
+    public void hashMapper() {
+        RedisHashMapper<Crossing> mapper = redisUtils.hashMapper(Crossing.class);
+        Crossing crossing = new Crossing();
+        crossing.name = "crossing1";
+        crossing.flow = 10;
+        mapper.save("crossing1", crossing);
+        mapper.increment("crossing1", "flow", 5);
+        Crossing partial = mapper.load("crossing1", "flow");
+        System.out.println(partial.name + " " + partial.flow);
+    }
+
+    @Test
+    public void setAndExpireWithNonPositiveSecondsDeletes() {
+        redisUtils.set("expire:zero", "bar");
+        redisUtils.setAndExpire("expire:zero", "baz", 0);
+        assertFalse(redisUtils.hasKey("expire:zero"));
+    }
+
+    public static class Crossing {
+        String name;
+        long flow;
     }
-}
\ No newline at end of file
+}
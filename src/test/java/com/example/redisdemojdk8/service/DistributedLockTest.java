@@ -1,10 +1,14 @@
 package com.example.redisdemojdk8.service;
 
 import com.example.redisdemojdk8.RedisDemoJdk8ApplicationTests;
-import com.example.redisdemojdk8.util.RedisUtils;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
-import redis.clients.jedis.Jedis;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -14,34 +18,93 @@ import static org.junit.Assert.*;
 public class DistributedLockTest extends RedisDemoJdk8ApplicationTests {
 
     @Autowired
-    Jedis jedis;
+    DistributedLock distributedLock;
 
     @Test
     public void demoMethod() throws InterruptedException {
-        String key = "mylock";
-        boolean gotLock1 = getLock(key);
-        if (gotLock1) {
-            System.out.println("第一次获取到锁");
-        }
+        String name = "mylock";
+        DistributedLock.Lease lease1 = distributedLock.tryLock(name);
+        assertNotNull("第一次获取到锁", lease1);
 
-        Thread.sleep(1000);
+        assertNull("锁被持有时第二次获取失败", distributedLock.tryLock(name, 200));
 
-        boolean isLock2 = getLock(key);
-        if (isLock2) {
-            System.out.println("第二次获取到锁");
+        assertTrue(distributedLock.unlock(lease1));
+        assertFalse("重复释放无效", distributedLock.unlock(lease1));
+
+        try (DistributedLock.Lease lease2 = distributedLock.tryLock(name)) {
+            assertNotNull("释放后可以再次获取", lease2);
         }
+        assertFalse(distributedLock.isLocked(name));
     }
 
-    private boolean getLock(String key) {
-        Long flag = jedis.setnx(key, "1");
-        if (flag == 1) {
-            jedis.expire(key, 10);
-        }
-        return flag == 1;
+    @Test
+    public void watchdogRenewsLease() throws InterruptedException {
+        String name = "mylock:watchdog";
+        DistributedLock.Lease lease = distributedLock.tryLock(name, 0, 300, true);
+        assertNotNull(lease);
+        Thread.sleep(1000);
+        assertTrue("租期内持续续期", distributedLock.isLocked(name));
+        assertFalse(lease.isLost());
+        assertTrue(distributedLock.unlock(lease));
+
+        DistributedLock.Lease expiring = distributedLock.tryLock(name, 0, 300, false);
+        assertNotNull(expiring);
+        Thread.sleep(600);
+        assertFalse("不续期时租期结束自动释放", distributedLock.isLocked(name));
+        assertFalse("过期后不会删除他人的锁", distributedLock.unlock(expiring));
     }
 
-    private void releaseLock(String key) {
-        jedis.del(key);
+    @Test
+    public void waiterWakesUpOnRelease() throws Exception {
+        String name = "mylock:wakeup";
+        DistributedLock.Lease holder = distributedLock.tryLock(name);
+        assertNotNull(holder);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Long> waited = pool.submit(() -> {
+            try (DistributedLock.Lease lease = distributedLock.tryLock(name, 10000)) {
+                assertNotNull(lease);
+                return System.nanoTime();
+            }
+        });
+        Thread.sleep(500);
+        long released = System.nanoTime();
+        assertTrue(distributedLock.unlock(holder));
+        long latency = TimeUnit.NANOSECONDS.toMillis(waited.get(10, TimeUnit.SECONDS) - released);
+        System.out.println("唤醒延迟：" + latency + "ms");
+        assertTrue("释放通知立即唤醒等待者，而不是等到租期结束", latency < 1000);
+        pool.shutdown();
     }
 
-}
\ No newline at end of file
+    @Test
+    public void mutualExclusion() throws InterruptedException {
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger counter = new AtomicInteger();
+        long remoteBefore = distributedLock.getRemoteAcquireCount();
+        long handoffBefore = distributedLock.getLocalHandoffCount();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            pool.execute(() -> {
+                for (int j = 0; j < 20; j++) {
+                    try {
+                        distributedLock.executeWithLock("mylock:counter", 10000, () -> {
+                            assertEquals(1, inside.incrementAndGet());
+                            counter.incrementAndGet();
+                            return inside.decrementAndGet();
+                        });
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+        assertEquals(160, counter.get());
+        long remote = distributedLock.getRemoteAcquireCount() - remoteBefore;
+        long handoff = distributedLock.getLocalHandoffCount() - handoffBefore;
+        System.out.println("Redis加锁" + remote + "次，本地交接" + handoff + "次");
+        assertEquals(160, remote + handoff);
+        assertTrue("本地竞争者排队，大部分通过交接获得锁", remote < 80);
+        assertFalse(distributedLock.isLocked("mylock:counter"));
+    }
+}
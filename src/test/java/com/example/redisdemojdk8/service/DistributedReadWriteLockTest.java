@@ -0,0 +1,96 @@
+package com.example.redisdemojdk8.service;
+
+import com.example.redisdemojdk8.RedisDemoJdk8ApplicationTests;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Redis 读写锁
+ */
+public class DistributedReadWriteLockTest extends RedisDemoJdk8ApplicationTests {
+
+    @Autowired
+    DistributedReadWriteLock readWriteLock;
+
+    @Test
+    public void readersShareWritersExclude() throws InterruptedException {
+        String name = "plan:shared";
+        DistributedReadWriteLock.Lease reader1 = readWriteLock.tryReadLock(name, 0);
+        DistributedReadWriteLock.Lease reader2 = readWriteLock.tryReadLock(name, 0);
+        assertNotNull("读者之间共享", reader1);
+        assertNotNull("读者之间共享", reader2);
+        assertNull("有读者时写锁加锁失败", readWriteLock.tryWriteLock(name, 200));
+        assertTrue(readWriteLock.unlock(reader1));
+        assertTrue(readWriteLock.unlock(reader2));
+
+        DistributedReadWriteLock.Lease writer = readWriteLock.tryWriteLock(name, 0);
+        assertNotNull(writer);
+        assertNull("写锁排斥读者", readWriteLock.tryReadLock(name, 200));
+        assertNull("写锁排斥写者", readWriteLock.tryWriteLock(name, 0));
+        assertTrue(readWriteLock.unlock(writer));
+        assertFalse(readWriteLock.unlock(writer));
+    }
+
+    @Test
+    public void waitingWriterBlocksNewReaders() throws Exception {
+        String name = "plan:intent";
+        DistributedReadWriteLock.Lease reader = readWriteLock.tryReadLock(name, 0);
+        assertNotNull(reader);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Boolean> writer = pool.submit(() -> {
+            try (DistributedReadWriteLock.Lease lease = readWriteLock.tryWriteLock(name, 10000)) {
+                return lease != null;
+            }
+        });
+        Thread.sleep(300);
+        assertNull("写者等待时新的读者不能加锁", readWriteLock.tryReadLock(name, 0));
+        long released = System.nanoTime();
+        assertTrue(readWriteLock.unlock(reader));
+        assertTrue(writer.get(10, TimeUnit.SECONDS));
+        assertTrue("读者释放后写者立即获得锁",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - released) < 1000);
+        pool.shutdown();
+
+        try (DistributedReadWriteLock.Lease next = readWriteLock.tryReadLock(name, 1000)) {
+            assertNotNull("写锁释放后读者可以加锁", next);
+        }
+    }
+
+    @Test
+    public void timedOutWriterWithdrawsIntent() throws InterruptedException {
+        String name = "plan:withdraw";
+        DistributedReadWriteLock.Lease reader = readWriteLock.tryReadLock(name, 0);
+        assertNotNull(reader);
+        assertNull(readWriteLock.tryWriteLock(name, 200));
+        DistributedReadWriteLock.Lease another = readWriteLock.tryReadLock(name, 0);
+        assertNotNull("写者放弃后撤回写意向", another);
+        readWriteLock.unlock(another);
+        readWriteLock.unlock(reader);
+    }
+
+    @Test
+    public void readLeaseRenews() throws InterruptedException {
+        String name = "plan:renew";
+        DistributedReadWriteLock.Lease reader = readWriteLock.tryLock(name, false, 0, 300, true);
+        assertNotNull(reader);
+        Thread.sleep(1000);
+        assertFalse(reader.isLost());
+        assertNull("续期中的读锁仍然排斥写者", readWriteLock.tryWriteLock(name, 0));
+        assertTrue(readWriteLock.unlock(reader));
+
+        DistributedReadWriteLock.Lease expiring = readWriteLock.tryLock(name, false, 0, 300, false);
+        assertNotNull(expiring);
+        Thread.sleep(600);
+        DistributedReadWriteLock.Lease writer = readWriteLock.tryWriteLock(name, 0);
+        assertNotNull("读者过期后写者可以加锁", writer);
+        assertFalse(readWriteLock.unlock(expiring));
+        assertTrue(readWriteLock.unlock(writer));
+    }
+}
@@ -1,44 +1,85 @@
 package com.example.redisdemojdk8.service;
 
 import com.example.redisdemojdk8.RedisDemoJdk8ApplicationTests;
+import com.example.redisdemojdk8.util.RedisUtils;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
-import org.springframework.data.redis.core.script.RedisScript;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
 
 public class LuaDemoTest extends RedisDemoJdk8ApplicationTests {
 
+    @Autowired
+    private LuaDemo luaDemo;
+
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
 
-    @Test
-    public void luaDemoMethod() {
+    @Autowired
+    private RedisUtils redisUtils;
 
-        String luaScript = readResourceFile("myscript.lua");
+    @Autowired
+    private DistributedLock distributedLock;
 
-        RedisScript<Long> script = new DefaultRedisScript<>(luaScript, Long.class);
-        List<String> keys = null; // 通常情况下，没有KEYS部分
-        String[] args = new String[]{"10", "20"}; // 传递给Lua脚本的参数
-        Long result = stringRedisTemplate.execute(script, keys, args);
+    @Test
+    public void luaDemoMethod() {
+        Long result = luaDemo.luaDemoMethod(10, 20);
         System.out.println(result);
+        assertEquals(Long.valueOf(30), result);
     }
 
-    private String readResourceFile(String fileName) {
-        try (InputStream inputStream = LuaDemoTest.class.getClassLoader().getResourceAsStream(fileName);
-             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+    @Test
+    public void scriptsArePreloaded() {
+        Map<String, String> scripts = luaDemo.scripts();
+        assertTrue("扫描到根目录和lua目录下的脚本",
+                scripts.containsKey("myscript") && scripts.containsKey("lock_release"));
+        for (String sha1 : scripts.values()) {
+            assertEquals(40, sha1.length());
+            assertTrue("启动时已SCRIPT LOAD", stringRedisTemplate.execute((RedisCallback<Boolean>) connection ->
+                    connection.scriptingCommands().scriptExists(sha1).get(0)));
+        }
+    }
 
-            return reader.lines().collect(Collectors.joining("\n"));
-        } catch (Exception e) {
-            e.printStackTrace();
+    @Test
+    public void reloadsAfterScriptFlush() {
+        long reloads = luaDemo.getReloadCount();
+        stringRedisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.scriptingCommands().scriptFlush();
             return null;
-        }
+        });
+        assertEquals(Long.valueOf(3), luaDemo.execute("myscript", Long.class, Collections.emptyList(), "1", "2"));
+        assertEquals("NOSCRIPT后重新加载一次", reloads + 1, luaDemo.getReloadCount());
+        assertEquals(Long.valueOf(7), luaDemo.execute("myscript", Long.class, Collections.emptyList(), "3", "4"));
+        assertEquals(reloads + 1, luaDemo.getReloadCount());
+        assertTrue("按脚本统计调用次数", (Long) luaDemo.stats().get("myscript").get("count") >= 2);
+        // 恢复其他脚本，不影响其他用例
+        luaDemo.preload();
+    }
+
+    @Test
+    public void applicationScriptsShareReloadAndStats() {
+        long reloads = luaDemo.getReloadCount();
+        stringRedisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.scriptingCommands().scriptFlush();
+            return null;
+        });
+        redisUtils.del("lua:counter");
+        // RedisTemplate执行的RedisUtils脚本和JedisPool执行的锁脚本都经过注册表
+        assertEquals(1, redisUtils.incrAndExpireAt("lua:counter", 1, System.currentTimeMillis() + 60000));
+        DistributedLock.Lease lease = distributedLock.tryLock("lua:registry");
+        assertNotNull(lease);
+        assertTrue(distributedLock.unlock(lease));
+        assertEquals("每个脚本NOSCRIPT后各重新加载一次", reloads + 3, luaDemo.getReloadCount());
+        Map<String, Map<String, Object>> stats = luaDemo.stats();
+        assertTrue(stats.containsKey("incr_expire"));
+        assertTrue(stats.containsKey("lock_acquire"));
+        assertTrue(stats.containsKey("lock_release"));
+        redisUtils.del("lua:counter");
+        luaDemo.preload();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,90 @@
+package com.example.redisdemojdk8.service;
+
+import com.example.redisdemojdk8.RedisDemoJdk8ApplicationTests;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分布式限流与信号量
+ */
+public class RateLimiterTest extends RedisDemoJdk8ApplicationTests {
+
+    @Autowired
+    RateLimiter rateLimiter;
+
+    @Test
+    public void tokenBucket() throws InterruptedException {
+        String name = "test:bucket:" + System.nanoTime();
+        RateLimiter.Decision batch = rateLimiter.acquireTokens(name, 8, 10, 10);
+        assertTrue("容量内的突发放行", batch.isGranted());
+        assertEquals(2, batch.getRemaining());
+
+        RateLimiter.Decision denied = rateLimiter.acquireTokens(name, 5, 10, 10);
+        assertFalse("令牌不足时不放行", denied.isGranted());
+        assertTrue("返回补足令牌需要的等待时间", denied.getWaitMillis() > 0 && denied.getWaitMillis() <= 300);
+        assertTrue("未放行时不扣令牌", rateLimiter.tryAcquireToken(name, 10, 10));
+
+        assertTrue("按等待时间休眠后获得", rateLimiter.acquireTokens(name, 5, 10, 10, 2000));
+        assertFalse("超时前补不足时直接失败", rateLimiter.acquireTokens(name, 10, 10, 10, 100));
+    }
+
+    @Test
+    public void slidingWindow() throws InterruptedException {
+        String name = "test:window:" + System.nanoTime();
+        assertTrue(rateLimiter.acquireWindow(name, 3, 5, 500).isGranted());
+        assertTrue(rateLimiter.tryAcquireWindow(name, 5, 500));
+        RateLimiter.Decision last = rateLimiter.acquireWindow(name, 1, 5, 500);
+        assertTrue(last.isGranted());
+        assertEquals(0, last.getRemaining());
+        RateLimiter.Decision denied = rateLimiter.acquireWindow(name, 1, 5, 500);
+        assertFalse("窗口内超过上限", denied.isGranted());
+        assertTrue(denied.getWaitMillis() > 0 && denied.getWaitMillis() <= 500);
+
+        TimeUnit.MILLISECONDS.sleep(denied.getWaitMillis() + 20);
+        assertTrue("最早的记录滑出窗口后放行", rateLimiter.acquireWindow(name, 3, 5, 500).isGranted());
+    }
+
+    @Test
+    public void semaphore() throws Exception {
+        String name = "test:semaphore:" + System.nanoTime();
+        RateLimiter.Permits first = rateLimiter.tryAcquirePermits(name, 2, 3, 30000);
+        assertNotNull(first);
+        assertNull("许可不足", rateLimiter.tryAcquirePermits(name, 2, 3, 30000));
+        assertTrue(rateLimiter.renew(first, 30000));
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Boolean> waiter = pool.submit(() -> {
+            try (RateLimiter.Permits permits = rateLimiter.tryAcquirePermits(name, 3, 3, 30000, 10000)) {
+                return permits != null;
+            }
+        });
+        TimeUnit.MILLISECONDS.sleep(200);
+        long released = System.nanoTime();
+        assertEquals(2, rateLimiter.release(first));
+        assertTrue(waiter.get(10, TimeUnit.SECONDS));
+        assertTrue("归还后等待者被通知唤醒",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - released) < 1000);
+        pool.shutdown();
+        assertEquals("重复归还不计入", 0, rateLimiter.release(first));
+    }
+
+    @Test
+    public void expiredPermitsAreReclaimed() throws InterruptedException {
+        String name = "test:semaphore:lease:" + System.nanoTime();
+        RateLimiter.Permits crashed = rateLimiter.tryAcquirePermits(name, 1, 1, 200);
+        assertNotNull(crashed);
+        long start = System.nanoTime();
+        RateLimiter.Permits next = rateLimiter.tryAcquirePermits(name, 1, 1, 30000, 5000);
+        assertNotNull("持有者未归还时租期结束后回收", next);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertFalse("已被回收的许可不能续期", rateLimiter.renew(crashed, 30000));
+        assertEquals(1, rateLimiter.release(next));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.redisdemojdk8.service;
+
+import com.example.redisdemojdk8.RedisDemoJdk8ApplicationTests;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SegmentIdGeneratorTest extends RedisDemoJdk8ApplicationTests {
+
+    @Autowired
+    SegmentIdGenerator segmentIdGenerator;
+
+    @Test
+    public void nextIdIsUnique() throws InterruptedException {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            pool.execute(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    ids.add(segmentIdGenerator.nextId("test"));
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+        assertEquals(80000, ids.size());
+        System.out.println(segmentIdGenerator.currentStep("test"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.redisdemojdk8.util;
+
+import com.example.redisdemojdk8.RedisDemoJdk8ApplicationTests;
+import com.example.redisdemojdk8.constant.Constant;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 按缓存名配置的RedisCacheManager与提前刷新
+ */
+public class RefreshAheadRedisCacheTest extends RedisDemoJdk8ApplicationTests {
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    RedisConnectionFactory redisConnectionFactory;
+
+    @Autowired
+    StringRedisTemplate stringRedisTemplate;
+
+    @Test
+    public void defaultPrefixAndTtl() {
+        Cache cache = cacheManager.getCache("test:defaults");
+        assertTrue(cache instanceof RefreshAheadRedisCache);
+        cache.put("1001", Collections.singletonMap("name", "路口1001"));
+        String key = Constant.KEY_PREFIX + "cache:test:defaults:1001";
+        assertTrue("Key在KEY_PREFIX之下", stringRedisTemplate.hasKey(key));
+        assertTrue("默认存活时间", stringRedisTemplate.getExpire(key, TimeUnit.SECONDS) > 0);
+        assertEquals("路口1001", ((Map<?, ?>) cache.get("1001").get()).get("name"));
+        cache.evict("1001");
+    }
+
+    @Test
+    public void refreshesAheadWithoutBlocking() throws Exception {
+        RefreshAheadRedisCacheManager manager = new RefreshAheadRedisCacheManager(redisConnectionFactory,
+                RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMillis(1000))
+                        .prefixCacheNameWith(Constant.KEY_PREFIX + "cache:"),
+                Collections.emptyMap(), 0.5, 1);
+        RefreshAheadRedisCache cache = (RefreshAheadRedisCache) manager.getCache("test:refresh");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch slowLoad = new CountDownLatch(1);
+        String key = "k" + System.nanoTime();
+        assertEquals(Integer.valueOf(1), cache.get(key, loads::incrementAndGet));
+        assertEquals("未到刷新时间时不重新加载", Integer.valueOf(1), cache.get(key, loads::incrementAndGet));
+
+        TimeUnit.MILLISECONDS.sleep(600);
+        long start = System.nanoTime();
+        Integer current = cache.get(key, () -> {
+            slowLoad.await();
+            return loads.incrementAndGet();
+        });
+        assertEquals("刷新期间返回当前值", Integer.valueOf(1), current);
+        assertTrue("调用方不等待重新加载", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 200);
+        assertEquals(Integer.valueOf(1), cache.get(key, loads::incrementAndGet));
+        assertEquals("同一个Key只提交一次刷新", 1, cache.getRefreshCount());
+        slowLoad.countDown();
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertEquals("刷新后的值写回Redis", Integer.valueOf(2), cache.get(key, loads::incrementAndGet));
+        manager.shutdown();
+    }
+
+    @Test
+    public void concurrentMissesLoadOnce() throws Exception {
+        Cache cache = cacheManager.getCache("test:miss");
+        String key = "k" + System.nanoTime();
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        Future<?>[] futures = new Future<?>[8];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = pool.submit(() -> cache.get(key, () -> {
+                TimeUnit.MILLISECONDS.sleep(200);
+                return loads.incrementAndGet();
+            }));
+        }
+        for (Future<?> future : futures) {
+            assertEquals(1, future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals("未命中时同一个Key只加载一次", 1, loads.get());
+        pool.shutdown();
+        cache.evict(key);
+    }
+
+    @Test
+    public void failedRefreshDoesNotFailMisses() throws Exception {
+        RefreshAheadRedisCacheManager manager = new RefreshAheadRedisCacheManager(redisConnectionFactory,
+                RedisCacheConfiguration.defaultCacheConfig().entryTtl(Duration.ofMillis(1000))
+                        .prefixCacheNameWith(Constant.KEY_PREFIX + "cache:"),
+                Collections.emptyMap(), 0.5, 1);
+        RefreshAheadRedisCache cache = (RefreshAheadRedisCache) manager.getCache("test:refresh-failure");
+        CountDownLatch failRefresh = new CountDownLatch(1);
+        String key = "k" + System.nanoTime();
+        assertEquals(Integer.valueOf(1), cache.get(key, () -> 1));
+
+        TimeUnit.MILLISECONDS.sleep(600);
+        assertEquals(Integer.valueOf(1), cache.get(key, () -> {
+            failRefresh.await();
+            throw new IllegalStateException("refresh failed");
+        }));
+        TimeUnit.MILLISECONDS.sleep(600);
+        // 值已过期而刷新仍在进行，未命中的调用方自己加载，不等待刷新
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Integer> miss = pool.submit(() -> cache.get(key, () -> 2));
+        failRefresh.countDown();
+        assertEquals(Integer.valueOf(2), miss.get(5, TimeUnit.SECONDS));
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals(1, cache.getRefreshFailureCount());
+        pool.shutdown();
+        manager.shutdown();
+        cache.evict(key);
+    }
+}